@@ -3,6 +3,8 @@ package trianglegenome;
 import java.awt.image.BufferedImage;
 import java.util.Random;
 
+import trianglegenome.util.MutatorType;
+
 /**
  * Contains useful constants for the triangle genome project
  *
@@ -10,14 +12,14 @@ import java.util.Random;
 public class Constants
 {
   /**
-   * Amount of Triangles to use for a genome
+   * Default number of triangles of a genome, a run may use any number
    */
-  public static final int TRIANGLE_COUNT = 200;
+  public static final int DEFAULT_TRIANGLE_COUNT = 200;
 
   /**
-   * Total genes
+   * Largest number of triangles a run may use
    */
-  public static final int GENE_COUNT = TRIANGLE_COUNT * 10;
+  public static final int MAXIMUM_TRIANGLE_COUNT = 1000;
 
   /**
    * Default Initial population size for a tribe
@@ -29,6 +31,324 @@ public class Constants
    */
   public static final int DEFAULT_MAXIMUM_POPULATION = 4;
 
+  /**
+   * Default population of a tribe running in steady state mode
+   */
+  public static final int DEFAULT_STEADY_STATE_POPULATION = 200;
+
+  /**
+   * Number of genomes competing in a tournament selection
+   */
+  public static final int TOURNAMENT_SIZE = 4;
+
+  /**
+   * Offspring created and evaluated together in one steady state batch, enough
+   * to keep every core busy
+   */
+  public static final int OFFSPRING_BATCH_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Genes set to a random value in each steady state offspring
+   */
+  public static final int OFFSPRING_MUTATIONS = 2;
+
+  /**
+   * Most pairs of genomes of a population used to find the average hamming
+   * distance, larger populations have a random sample of pairs compared
+   */
+  public static final int HAMMING_SAMPLE_PAIRS = 120;
+
+  /**
+   * Share of hill climbing steps that jump a triangle to its optimal color
+   */
+  public static final double OPTIMAL_COLOR_SHARE = 0.1;
+
+  /**
+   * Width and height in pixels of a tile of the error map
+   */
+  public static final int ERROR_TILE_SIZE = 16;
+
+  /**
+   * Gene selections made from an error map before it is measured again
+   */
+  public static final int ERROR_MAP_REFRESH = 100;
+
+  /**
+   * Largest gain a move may be proven to have and still be rejected without
+   * drawing it, 0 rejects only moves that cannot improve
+   */
+  public static final long SCREEN_NEGLIGIBLE_GAIN = 0;
+
+  /**
+   * Share of screened out moves that are scored anyway to check their bound
+   * held, Constants.DEBUG_SCREEN checks every one
+   */
+  public static final double SCREEN_AUDIT_SHARE = 0.01;
+
+  /**
+   * Weight of the exploration bonus of the operator bandit, relative to the
+   * best rate of fitness gain
+   */
+  public static final double BANDIT_EXPLORATION = 1.0;
+
+  /**
+   * How much every earlier pull of the operator bandit fades with each new one
+   */
+  public static final double BANDIT_DECAY = 0.999;
+
+  /**
+   * Tabu moves a climber skips before it gives up for a step
+   */
+  public static final int TABU_RETRIES = 4;
+
+  /**
+   * Largest change of a gene proposed by annealing
+   */
+  public static final int ANNEALING_STEP = 16;
+
+  /**
+   * Share of worse moves annealing aims to accept
+   */
+  public static final double ANNEALING_TARGET_ACCEPTANCE = 0.1;
+
+  /**
+   * How fast the annealing temperature follows the acceptance rate
+   */
+  public static final double ANNEALING_ADAPT_RATE = 0.02;
+
+  /**
+   * Annealing steps without a new best fitness before the temperature is
+   * raised again
+   */
+  public static final int ANNEALING_STAGNATION = 5000;
+
+  /**
+   * Factor the annealing temperature is raised by on stagnation
+   */
+  public static final double ANNEALING_REHEAT = 4;
+
+  /**
+   * Temperature of the coldest tribe in parallel tempering
+   */
+  public static final double TEMPERING_MIN_TEMPERATURE = 100;
+
+  /**
+   * Starting temperature of the hottest tribe in parallel tempering
+   */
+  public static final double TEMPERING_MAX_TEMPERATURE = 100000;
+
+  /**
+   * Share of replica swaps parallel tempering spaces its temperatures for
+   */
+  public static final double TEMPERING_TARGET_SWAP_RATE = 0.23;
+
+  /**
+   * How fast the gaps between parallel tempering temperatures follow the
+   * share of swaps made
+   */
+  public static final double TEMPERING_ADAPT_RATE = 0.2;
+
+  /**
+   * Offspring the evolution strategy scores in every step
+   */
+  public static final int ES_OFFSPRING = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Starting standard deviation of an evolution strategy move
+   */
+  public static final double ES_INITIAL_SIGMA = 4;
+
+  /**
+   * Smallest standard deviation of an evolution strategy move
+   */
+  public static final double ES_MIN_SIGMA = 0.5;
+
+  /**
+   * Largest standard deviation of an evolution strategy move
+   */
+  public static final double ES_MAX_SIGMA = 32;
+
+  /**
+   * Spread of the log step sizes the offspring of the evolution strategy draw
+   */
+  public static final double ES_SIGMA_LEARNING_RATE = 0.3;
+
+  /**
+   * Factor the evolution strategy shrinks its step by when no offspring wins
+   */
+  public static final double ES_FAILURE_SHRINK = 0.9;
+
+  /**
+   * Change of every gene in the probes of an SPSA gradient estimate
+   */
+  public static final int SPSA_PERTURBATION = 3;
+
+  /**
+   * Pairs of probes an SPSA gradient estimate is averaged over
+   */
+  public static final int SPSA_SAMPLES = 1;
+
+  /**
+   * Triangles whose genes SPSA moves together
+   */
+  public static final int SPSA_GROUP_SIZE = 3;
+
+  /**
+   * Largest change of a gene in an SPSA line search
+   */
+  public static final int SPSA_MAX_STEP = 8;
+
+  /**
+   * Standard deviation of the steps of a compound move
+   */
+  public static final double COMPOUND_STEP = 24;
+
+  /**
+   * Random triangles the z-order mutator tries to find one that overlaps
+   */
+  public static final int Z_ORDER_TRIES = 8;
+
+  /**
+   * Disjoint groups the partitioned mutator climbs in parallel every step
+   */
+  public static final int PARTITION_GROUPS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Pixels a group of the partitioned mutator reaches past its triangle
+   */
+  public static final int PARTITION_MARGIN = 8;
+
+  /**
+   * Evaluations each group of the partitioned mutator spends in a step
+   */
+  public static final int PARTITION_STEPS = 20;
+
+  /**
+   * Generations of a tribe between passes that seed dead triangles again, 0
+   * never recycles
+   */
+  public static final int RECYCLE_INTERVAL = 5000;
+
+  /**
+   * Tiles tried for a dead triangle before it is left where it is
+   */
+  public static final int RECYCLE_TRIES = 3;
+
+  /**
+   * Alpha of a triangle seeded again
+   */
+  public static final int RECYCLE_ALPHA = 128;
+
+  /**
+   * Triangles a genome starts with when its triangle count grows
+   */
+  public static final int GROWTH_INITIAL_TRIANGLES = 20;
+
+  /**
+   * Triangles added to every genome of a tribe when it stalls
+   */
+  public static final int GROWTH_STEP = 10;
+
+  /**
+   * Generations of a tribe over which its improvement is measured
+   */
+  public static final int GROWTH_WINDOW = 2000;
+
+  /**
+   * Share of fitness the best genome of a tribe must gain over a window for
+   * the tribe not to count as stalled
+   */
+  public static final double GROWTH_MIN_GAIN = 0.01;
+
+  /**
+   * Steepest pixels of the target that may become points of a Delaunay
+   * seeded genome
+   */
+  public static final int DELAUNAY_CANDIDATES = 20000;
+
+  /**
+   * Smallest distance between two points of a Delaunay seeded genome, as a
+   * share of the spacing of evenly spread points
+   */
+  public static final double DELAUNAY_SPACING = 0.5;
+
+  /**
+   * Alpha of the triangles of a Delaunay seeded genome
+   */
+  public static final int DELAUNAY_ALPHA = 200;
+
+  /**
+   * Alpha of the triangles of a randomly seeded genome
+   */
+  public static final int DEFAULT_SEED_ALPHA = 80;
+
+  /**
+   * Halvings of the resolution a progressive run starts with
+   */
+  public static final int PROGRESSIVE_LEVELS = 2;
+
+  /**
+   * Smallest width or height of the target a progressive run starts on
+   */
+  public static final int PROGRESSIVE_MIN_SIZE = 48;
+
+  /**
+   * Generations of every tribe over which a progressive run measures the gain
+   * of its best genome
+   */
+  public static final int PROGRESSIVE_WINDOW = 2000;
+
+  /**
+   * Share of fitness the best genome must gain over a window for a
+   * progressive run to stay at its resolution
+   */
+  public static final double PROGRESSIVE_MIN_GAIN = 0.01;
+
+  /**
+   * Evaluations of a tribe over which its improvement is measured to find out
+   * if it stagnated
+   */
+  public static final int STAGNATION_WINDOW = 30000;
+
+  /**
+   * Share of fitness the best genome of a tribe must gain per window of
+   * evaluations for the tribe not to be restarted
+   */
+  public static final double STAGNATION_MIN_GAIN = 0.002;
+
+  /**
+   * Let a restarted tribe take a copy of the best genome of all tribes
+   */
+  public static final boolean STAGNATION_MIGRATION = true;
+
+  /**
+   * Milliseconds the first rung of a race runs before the worse half of the
+   * configurations is dropped, every later rung runs twice as long
+   */
+  public static final long RACING_RUNG_MILLIS = 10000;
+
+  /**
+   * Configurations left when a race ends
+   */
+  public static final int RACING_FINALISTS = 1;
+
+  /**
+   * Mutators a race tries besides the chosen settings
+   */
+  public static final MutatorType[] RACING_MUTATORS = { MutatorType.ADAPTIVE, MutatorType.HILL_CLIMBING,
+      MutatorType.COMPOUND, MutatorType.ANNEALING, MutatorType.LINE_SEARCH, MutatorType.OPTIMAL_COLOR };
+
+  /**
+   * Initial populations a race tries besides the chosen settings
+   */
+  public static final int[] RACING_POPULATIONS = { 1, 2, 4 };
+
+  /**
+   * Alphas of randomly seeded triangles a race tries besides the chosen
+   * settings
+   */
+  public static final int[] RACING_ALPHAS = { 80, 160 };
+
   /**
    * Random generator
    */
@@ -44,15 +364,22 @@ public class Constants
    */
   public static final int BUF_IMG_TYPE = BufferedImage.TYPE_3BYTE_BGR;
 
+  /**
+   * Keep the target and canvases off the heap, set with
+   * -Dtrianglegenome.offheap=true
+   */
+  public static final boolean OFF_HEAP = Boolean.getBoolean("trianglegenome.offheap");
+
   /**
    * Serial version ID (not currently needed other than for warnings)
    */
   public static final long SERIAL_VERSION_UID = 6398103666993659100L;
 
   /**
-   * Metric for when a genome is not diverse enough
+   * Share of its genes a genome must differ in from every other genome of a
+   * tribe to be diverse enough
    */
-  public static final int DIVERSITY_METRIC = GENE_COUNT / 3;
+  public static final double DIVERSITY_SHARE = 1.0 / 3;
 
   /**
    * Debug Constants
@@ -63,5 +390,6 @@ public class Constants
   public static final boolean DEBUG_NAT_SEL = false;
   public static final boolean DEBUG_GEN = false;
   public static final boolean DEBUG_VALID = false;
+  public static final boolean DEBUG_SCREEN = false;
 
 }
@@ -1,13 +1,18 @@
 package trianglegenome;
 
 import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import trianglegenome.util.Canvas;
+import trianglegenome.util.ErrorMap;
+import trianglegenome.util.MutationJournal;
+import trianglegenome.util.TabuList;
+import trianglegenome.util.Target;
+
 /**
  * Creates a new genome that is represented by Triangles
  * 
@@ -24,6 +29,14 @@ public class Genome implements Comparable<Genome>
   public int previousDelta = 0;
   public int previousGene = -1;
   public int successfulClimbs = 0;
+  public int climbOperator = -1;
+  public double temperature = 0;
+  public long annealingBest = Long.MAX_VALUE;
+  public int stagnantSteps = 0;
+  public Genome elite;
+  public final TabuList tabu = new TabuList();
+  public ErrorMap errorMap;
+  public final MutationJournal journal = new MutationJournal(this);
 
   /**
    * Create a new genome with a target width and height, and list of triangles
@@ -53,35 +66,27 @@ public class Genome implements Comparable<Genome>
   }
 
   /**
-   * Draw whole genome on an image
+   * Draw whole genome on an image in the project format
    * 
    * @param image image to draw on
    */
   public void drawImage(BufferedImage image)
   {
-    Graphics2D g2D = image.createGraphics();
-    g2D.setBackground(Color.white);
-    g2D.clearRect(0, 0, width, height);
-    for (int i = 0; i < triangles.size(); i++)
-    {
-      triangles.get(i).drawTriangle(g2D);
-    }
+    drawImage(image, triangles.size());
   }
 
   /**
-   * Draw genome on an image with specified number of triangles
+   * Draw genome on an image in the project format with specified number of
+   * triangles
    * 
    * @param image image to draw on
    * @param numberOfTriangles how many triangles to draw
    */
   public void drawImage(BufferedImage image, int numberOfTriangles)
   {
-    Graphics2D g2D = image.createGraphics();
-    g2D.setBackground(Color.white);
-    g2D.clearRect(0, 0, width, height);
-    for (int i = 0; i < numberOfTriangles; i++)
+    try (Canvas canvas = new Canvas(image))
     {
-      triangles.get(i).drawTriangle(g2D);
+      canvas.drawGenome(this, numberOfTriangles);
     }
   }
 
@@ -123,6 +128,16 @@ public class Genome implements Comparable<Genome>
     return height;
   }
 
+  /**
+   * Get the number of genes, ten for every triangle
+   * 
+   * @return number of genes
+   */
+  public int getGeneCount()
+  {
+    return triangles.size() * 10;
+  }
+
   /**
    * Get gene
    * 
@@ -169,6 +184,19 @@ public class Genome implements Comparable<Genome>
     triangles.get(n / 10).changeGene(n % 10, delta);
   }
 
+  /**
+   * Tell the tabu list and the error map that a triangle changed, every
+   * accepted change is reported here
+   * 
+   * @param triangle index of the triangle that changed
+   * @param rect x, y, width and height of the pixels that changed
+   */
+  public void changed(int triangle, int[] rect)
+  {
+    tabu.changed(this, triangle, rect);
+    if (errorMap != null) errorMap.markChanged(rect);
+  }
+
   /**
    * May not be correct, gets the bounding rectangle for a triangle that has
    * gene
@@ -183,6 +211,19 @@ public class Genome implements Comparable<Genome>
 
   }
 
+  /**
+   * Get the rectangle holding every pixel that can change when a gene is
+   * changed
+   * 
+   * @param n gene that would change
+   * @param delta how much it would change
+   * @return x, y, width and height of the region
+   */
+  public int[] getGeneChangeRect(int n, int delta)
+  {
+    return triangles.get(n / 10).getChangeRect(n % 10, delta);
+  }
+
   /**
    * Create a deep copy of the current genome
    * 
@@ -201,6 +242,48 @@ public class Genome implements Comparable<Genome>
     return new Genome(trianglesCopy, width, height);
   }
 
+  /**
+   * Create a copy of the genome for a target of another size, the fitness is
+   * not copied
+   * 
+   * @param width width of the new target
+   * @param height height of the new target
+   * @return new genome with every triangle scaled to the new size
+   */
+  public Genome scaledCopy(int width, int height)
+  {
+    List<Triangle> trianglesCopy = new ArrayList<>(triangles.size());
+    for (Triangle triangle : triangles)
+    {
+      trianglesCopy.add(triangle.scaledCopy(width, height));
+    }
+    return new Genome(trianglesCopy, width, height);
+  }
+
+  /**
+   * Scale every triangle of the genome to a target of another size, the
+   * fitness has to be found again
+   * 
+   * @param width width of the new target
+   * @param height height of the new target
+   */
+  public void rescale(int width, int height)
+  {
+    for (int i = 0; i < triangles.size(); i++)
+    {
+      triangles.set(i, triangles.get(i).scaledCopy(width, height));
+    }
+    this.width = width;
+    this.height = height;
+    // Nothing learned about the genes holds at the new size
+    tabu.clear();
+    previousGene = -1;
+    previousDelta = 0;
+    successfulClimbs = 0;
+    annealingBest = Long.MAX_VALUE;
+    elite = null;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -261,10 +344,23 @@ public class Genome implements Comparable<Genome>
    * @return new randomly generated genome
    */
   public static Genome randomGenome(BufferedImage targetImage, Random rand)
+  {
+    return randomGenome(targetImage, rand, Constants.DEFAULT_TRIANGLE_COUNT);
+  }
+
+  /**
+   * Create a random genome with a number of triangles using a random generator
+   * 
+   * @param targetImage target image
+   * @param rand random generator
+   * @param triangleCount number of triangles
+   * @return new randomly generated genome
+   */
+  public static Genome randomGenome(BufferedImage targetImage, Random rand, int triangleCount)
   {
     int width = targetImage.getWidth();
     int height = targetImage.getHeight();
-    return new Genome(genRandomTriangles(width, height, rand), targetImage);
+    return new Genome(genRandomTriangles(width, height, rand, triangleCount), targetImage);
   }
 
   /**
@@ -288,25 +384,80 @@ public class Genome implements Comparable<Genome>
    * @return new randomly generated genome
    */
   public static Genome randomGenomeFixedAlpha(BufferedImage targetImage, Random rand, int alpha)
+  {
+    return randomGenomeFixedAlpha(targetImage, rand, alpha, Constants.DEFAULT_TRIANGLE_COUNT);
+  }
+
+  /**
+   * Create a random genome with a number of triangles using a random generator
+   * and a fixed alpha
+   * 
+   * @param targetImage target image
+   * @param rand random generator
+   * @param alpha fixed alpha to use
+   * @param triangleCount number of triangles, at least 4
+   * @return new randomly generated genome
+   */
+  public static Genome randomGenomeFixedAlpha(BufferedImage targetImage, Random rand, int alpha, int triangleCount)
   {
     int width = targetImage.getWidth();
     int height = targetImage.getHeight();
-    return new Genome(genRandomTrianglesFixedAlpha(width, height, rand, alpha), targetImage);
+    return new Genome(genRandomTrianglesFixedAlpha(width, height, rand, alpha, triangleCount), targetImage);
   }
 
   /**
-   * Helper method to generate random triangles of size TRIANGLE_COUNT
+   * Create a genome of random triangles with a fixed alpha, each colored with
+   * the mean of the target under it
+   * 
+   * @param target target the colors are taken from
+   * @param rand random generator
+   * @param alpha fixed alpha to use
+   * @param triangleCount number of triangles, at least 4
+   * @return new genome
+   */
+  public static Genome targetColoredGenome(Target target, Random rand, int alpha, int triangleCount)
+  {
+    int width = target.getWidth();
+    int height = target.getHeight();
+    List<Triangle> triangles = genRandomTrianglesFixedAlpha(width, height, rand, alpha, triangleCount);
+    for (Triangle triangle : triangles)
+    {
+      colorFromTarget(triangle, target);
+    }
+    return new Genome(triangles, width, height);
+  }
+
+  /**
+   * Set the red, green and blue of a triangle to the mean of the target over
+   * its bounding rectangle, found in constant time from the summed area tables
+   * 
+   * @param triangle triangle to color
+   * @param target target the color is taken from
+   */
+  public static void colorFromTarget(Triangle triangle, Target target)
+  {
+    int[] box = triangle.getBoundingRect();
+    // The bounding rectangle holds the pixels from x to x + width inclusive
+    for (int band = 0; band < 3; band++)
+    {
+      triangle.setGene(8 - band, target.rectMean(box[0], box[1], box[2] + 1, box[3] + 1, band));
+    }
+  }
+
+  /**
+   * Helper method to generate random triangles
    * 
    * @param width width of the target image
    * @param height height of the target image
    * @param rand random generator to use
+   * @param triangleCount number of triangles
    * @return a list of triangles that were randomly generated
    */
-  public static List<Triangle> genRandomTriangles(int width, int height, Random rand)
+  public static List<Triangle> genRandomTriangles(int width, int height, Random rand, int triangleCount)
   {
-    List<Triangle> triangleList = new ArrayList<>(Constants.TRIANGLE_COUNT);
+    List<Triangle> triangleList = new ArrayList<>(triangleCount);
 
-    for (int i = 0; i < Constants.TRIANGLE_COUNT; i++)
+    for (int i = 0; i < triangleCount; i++)
     {
       triangleList.add(Triangle.createRandom(width, height, rand));
     }
@@ -315,18 +466,20 @@ public class Genome implements Comparable<Genome>
   }
 
   /**
-   * Helper method to generate random triangles of size TRIANGLE_COUNT with a
-   * fixed alpha
+   * Helper method to generate random triangles with a fixed alpha, the first
+   * four cover the image
    * 
    * @param width width of the target image
    * @param height height of the target image
    * @param rand random generator to use
    * @param alpha fixed alpha to use
+   * @param triangleCount number of triangles, at least 4
    * @return a list of triangles that were randomly generated
    */
-  public static List<Triangle> genRandomTrianglesFixedAlpha(int width, int height, Random rand, int alpha)
+  public static List<Triangle> genRandomTrianglesFixedAlpha(int width, int height, Random rand, int alpha,
+      int triangleCount)
   {
-    List<Triangle> triangleList = new ArrayList<>(Constants.TRIANGLE_COUNT);
+    List<Triangle> triangleList = new ArrayList<>(triangleCount);
 
     // make triangle for whole image
 
@@ -345,7 +498,7 @@ public class Genome implements Comparable<Genome>
 
     colors[0] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
-    colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
+    colors[2] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[3] = 200;
 
     triangleList.add(new Triangle(xPoints, yPoints, colors, width, height));
@@ -359,7 +512,7 @@ public class Genome implements Comparable<Genome>
 
     colors[0] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
-    colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
+    colors[2] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[3] = 200;
 
     triangleList.add(new Triangle(xPoints, yPoints, colors, width, height));
@@ -375,7 +528,7 @@ public class Genome implements Comparable<Genome>
 
     colors[0] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
-    colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
+    colors[2] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[3] = 200;
 
     triangleList.add(new Triangle(xPoints, yPoints, colors, width, height));
@@ -391,12 +544,12 @@ public class Genome implements Comparable<Genome>
 
     colors[0] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
-    colors[1] = rand.nextInt(Constants.COLOR_LIMIT);
+    colors[2] = rand.nextInt(Constants.COLOR_LIMIT);
     colors[3] = 200;
 
     triangleList.add(new Triangle(xPoints, yPoints, colors, width, height));
 
-    for (int i = 0; i < Constants.TRIANGLE_COUNT - 4; i++)
+    for (int i = 0; i < triangleCount - 4; i++)
     {
       triangleList.add(Triangle.createRandomFixedAlpha(width, height, rand, alpha));
     }
@@ -471,7 +624,7 @@ public class Genome implements Comparable<Genome>
    */
   public static boolean validGenome(Genome g1)
   {
-    if (g1.triangles.size() != Constants.TRIANGLE_COUNT)
+    if (g1.triangles.isEmpty() || g1.triangles.size() > Constants.MAXIMUM_TRIANGLE_COUNT)
     {
       return false;
     }
@@ -490,15 +643,17 @@ public class Genome implements Comparable<Genome>
    * Finds the Hamming Distance from another genome
    * 
    * @param other genome to find distance from
-   * @return Hamming Distance (number of differences)
+   * @return Hamming Distance (number of differences), every gene of a
+   *         triangle only one of the genomes has counts as different
    */
   public int hammingDistance(Genome other)
   {
 
-    int distance = 0;
+    int shared = Math.min(triangles.size(), other.triangles.size());
+    int distance = Math.abs(triangles.size() - other.triangles.size()) * 10;
 
     // Loop through all triangles
-    for (int i = 0; i <= triangles.size() - 1; i++)
+    for (int i = 0; i < shared; i++)
     {
       distance += triangles.get(i).hammingDistance(other.triangles.get(i));
     }
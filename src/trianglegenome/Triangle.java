@@ -24,6 +24,9 @@ public class Triangle
   private int[] colors;
   private final int width;
   private final int height;
+  // Filled lazily, parallel mutators read the triangles they share at once
+  private volatile int[] spans;
+  private static final int ERROR_ONE = 0x7fffffff;
 
   /**
    * Create a new Triangle given three vertices and a color
@@ -157,6 +160,7 @@ public class Triangle
   {
     xPoints[0] = p1.x;
     yPoints[0] = p1.y;
+    spans = null;
   }
 
   /**
@@ -169,6 +173,7 @@ public class Triangle
   {
     xPoints[0] = x;
     yPoints[0] = y;
+    spans = null;
   }
 
   /**
@@ -190,6 +195,7 @@ public class Triangle
   {
     xPoints[1] = p2.x;
     yPoints[1] = p2.y;
+    spans = null;
   }
 
   /**
@@ -202,6 +208,7 @@ public class Triangle
   {
     xPoints[1] = x;
     yPoints[1] = y;
+    spans = null;
   }
 
   /**
@@ -223,6 +230,7 @@ public class Triangle
   {
     xPoints[2] = p3.x;
     yPoints[2] = p3.y;
+    spans = null;
   }
 
   /**
@@ -235,6 +243,7 @@ public class Triangle
   {
     xPoints[2] = x;
     yPoints[2] = y;
+    spans = null;
   }
 
   /**
@@ -265,6 +274,7 @@ public class Triangle
       xPoints[i] = p.x;
       yPoints[i] = p.y;
     }
+    spans = null;
   }
 
   /**
@@ -325,6 +335,7 @@ public class Triangle
       {
         yPoints[n / 2] = value;
       }
+      spans = null;
     }
     else
     {
@@ -379,6 +390,7 @@ public class Triangle
       {
         yPoints[n / 2] += delta;
       }
+      spans = null;
     }
     else
     {
@@ -440,6 +452,7 @@ public class Triangle
     }
     setColorValues(listOfElements.subList(6, 10));
     makeAllValuesValid();
+    spans = null;
   }
 
   /**
@@ -566,7 +579,128 @@ public class Triangle
    */
   public Triangle deepCopy()
   {
-    return new Triangle(xPoints, yPoints, colors, width, height);
+    Triangle copy = new Triangle(xPoints, yPoints, colors, width, height);
+    copy.spans = spans;
+    return copy;
+  }
+
+  /**
+   * Create a copy of the triangle for an image of another size, every vertex
+   * is scaled to it
+   * 
+   * @param width width of the new image
+   * @param height height of the new image
+   * @return new Triangle bounded by the new size
+   */
+  public Triangle scaledCopy(int width, int height)
+  {
+    int[] x = new int[3];
+    int[] y = new int[3];
+    for (int i = 0; i < 3; i++)
+    {
+      // Pixel centers are scaled so every size maps the image onto itself
+      x[i] = Math.min(width - 1, (int) ((xPoints[i] + 0.5) * width / this.width));
+      y[i] = Math.min(height - 1, (int) ((yPoints[i] + 0.5) * height / this.height));
+    }
+    return new Triangle(x, y, colors, width, height);
+  }
+
+  /**
+   * Get the pixels covered by the triangle as one span per row, cached until a
+   * vertex changes so color changes reuse the coverage
+   * 
+   * The coverage is the one Graphics.fillPolygon draws with its default stroke
+   * normalization. The array holds the first row, the number of rows and then
+   * the first covered pixel and the pixel after the last covered pixel of
+   * every row. It is shared and must not be modified. Threads that find no
+   * spans yet may each scan the triangle, but all of them see a complete array
+   * 
+   * @return covered spans clipped to the target
+   */
+  public int[] getSpans()
+  {
+    int[] found = spans;
+    if (found == null)
+    {
+      found = findSpans();
+      spans = found;
+    }
+    return found;
+  }
+
+  /**
+   * Scan convert the triangle into spans the way the Java2D span iterator does
+   * 
+   * Vertices are moved a quarter pixel down and right, and every edge is
+   * stepped from row to row in float and fixed point arithmetic like the
+   * Java2D edge stepper, so even pixels whose center lies on an edge are
+   * rounded the same way
+   * 
+   * @return spans in the layout of getSpans
+   */
+  private int[] findSpans()
+  {
+    int minY = Math.min(yPoints[0], Math.min(yPoints[1], yPoints[2]));
+    int maxY = Math.max(yPoints[0], Math.max(yPoints[1], yPoints[2]));
+    int rows = maxY - minY;
+    int[] found = new int[2 + rows * 2];
+    found[0] = minY;
+    found[1] = rows;
+    int[] crossings = new int[rows * 2];
+    int[] count = new int[rows];
+
+    for (int e = 0; e < 3; e++)
+    {
+      float x0 = xPoints[e] + 0.25f;
+      float y0 = yPoints[e] + 0.25f;
+      float x1 = xPoints[(e + 1) % 3] + 0.25f;
+      float y1 = yPoints[(e + 1) % 3] + 0.25f;
+      if (y0 > y1)
+      {
+        float swap = x0;
+        x0 = x1;
+        x1 = swap;
+        swap = y0;
+        y0 = y1;
+        y1 = swap;
+      }
+      // Rows whose pixel centers the edge crosses
+      int firstRow = (int) Math.ceil(y0 - 0.5f);
+      int lastRow = (int) Math.ceil(y1 - 0.5f);
+      if (firstRow >= lastRow) continue;
+
+      float dx = x1 - x0;
+      float dy = y1 - y0;
+      float slope = dx / dy;
+      x0 += (firstRow + 0.5f - y0) * dx / dy;
+      int x = (int) Math.ceil(x0 - 0.5f);
+      int step = (int) Math.floor(slope);
+      // Fractions of a pixel in units of ERROR_ONE, a carry moves one pixel
+      int stepError = (int) ((slope - Math.floor(slope)) * ERROR_ONE);
+      int error = (int) ((x0 - (x - 0.5f)) * ERROR_ONE);
+      for (int y = firstRow; y < lastRow; y++)
+      {
+        int row = y - minY;
+        crossings[row * 2 + count[row]++] = x;
+        int sum = error + stepError;
+        x += step + (sum < 0 ? 1 : 0);
+        error = sum & ERROR_ONE;
+      }
+    }
+
+    for (int row = 0; row < rows; row++)
+    {
+      int start = 0;
+      int end = 0;
+      if (count[row] == 2)
+      {
+        start = Math.max(Math.min(crossings[row * 2], crossings[row * 2 + 1]), 0);
+        end = Math.min(Math.max(crossings[row * 2], crossings[row * 2 + 1]), width);
+      }
+      found[2 + row * 2] = start;
+      found[3 + row * 2] = Math.max(end, start);
+    }
+    return found;
   }
 
   /*
@@ -690,4 +824,34 @@ public class Triangle
     rect[3] = maxy - miny;
     return rect;
   }
+
+  /**
+   * Get the rectangle holding every pixel that can change when a gene is
+   * changed, the triangle itself is not changed
+   * 
+   * @param n gene that would change
+   * @param delta how much it would change
+   * @return x, y, width and height of the bounding rectangles before and after
+   */
+  public int[] getChangeRect(int n, int delta)
+  {
+    int[] rect = getBoundingRect();
+    if (n >= 6) return rect;
+
+    int[] x = xPoints.clone();
+    int[] y = yPoints.clone();
+    if (n % 2 == 0)
+    {
+      x[n / 2] += delta;
+    }
+    else
+    {
+      y[n / 2] += delta;
+    }
+    int minx = Math.min(rect[0], Math.min(x[0], Math.min(x[1], x[2])));
+    int miny = Math.min(rect[1], Math.min(y[0], Math.min(y[1], y[2])));
+    int maxx = Math.max(rect[0] + rect[2], Math.max(x[0], Math.max(x[1], x[2])));
+    int maxy = Math.max(rect[1] + rect[3], Math.max(y[0], Math.max(y[1], y[2])));
+    return new int[] { minx, miny, maxx - minx, maxy - miny };
+  }
 }
@@ -1,15 +1,25 @@
 package trianglegenome;
 
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.SwingUtilities;
 
+import trianglegenome.Tribe.EvolutionMode;
 import trianglegenome.gui.TriangleGenomeViewer;
+import trianglegenome.util.AnnealingMutator;
+import trianglegenome.util.ErrorGuidedGeneSelector;
 import trianglegenome.util.Fitness;
 import trianglegenome.util.Fitness.FitnessType;
+import trianglegenome.util.MutatorType;
+import trianglegenome.util.SeedingStrategy;
+import trianglegenome.util.Target;
 
 /**
  * Main triangle genome class, runs all tribes
@@ -17,7 +27,71 @@ import trianglegenome.util.Fitness.FitnessType;
  */
 public class TriangleGenome implements Runnable
 {
+  /**
+   * How the tribes work together
+   */
+  public enum RunMode
+  {
+    /**
+     * Tribes climb on their own and breed with each other from time to time
+     */
+    INDEPENDENT,
+
+    /**
+     * Every tribe anneals one genome at its own fixed temperature, neighbouring
+     * temperatures swap genomes by the replica exchange criterion
+     */
+    PARALLEL_TEMPERING,
+
+    /**
+     * Independent tribes that start on a target scaled down by
+     * Constants.PROGRESSIVE_LEVELS halvings and double its resolution,
+     * scaling every genome, whenever the best genome stalls
+     */
+    PROGRESSIVE,
+
+    /**
+     * Every tribe starts with another configuration of mutator, population
+     * and seed alpha, the worse half of the configurations is dropped after
+     * every rung of a race and their tribes go on as copies of the survivors
+     * until Constants.RACING_FINALISTS remain, then tribes breed as usual
+     */
+    RACING
+  }
+
+  /**
+   * Settings of a tribe tried in a race
+   */
+  private static final class Configuration
+  {
+    private final MutatorType mutatorType;
+    private final int population;
+    private final int alpha;
+
+    /**
+     * Create a new configuration
+     * 
+     * @param mutatorType mutator of the tribe
+     * @param population initial population of the tribe
+     * @param alpha alpha of randomly seeded triangles
+     */
+    private Configuration(MutatorType mutatorType, int population, int alpha)
+    {
+      this.mutatorType = mutatorType;
+      this.population = population;
+      this.alpha = alpha;
+    }
+
+    @Override
+    public String toString()
+    {
+      return mutatorType + ", population " + population + ", alpha " + alpha;
+    }
+  }
+
   private BufferedImage targetImage;
+  private final Target target;
+  private Fitness fitCalc;
   private List<Tribe> tribes;
   private List<Thread> tribeThreads;
   private final int numberOfTribes;
@@ -36,23 +110,65 @@ public class TriangleGenome implements Runnable
   private int initialPopulation;
   private int maximumPopulation;
   private int crossovers = 0;
+  private final EvolutionMode evolutionMode;
+  private final MutatorType mutatorType;
+  private final RunMode runMode;
+  private final int triangleCount;
+  private final boolean growTriangles;
+  private final SeedingStrategy seeding;
+  private int exchangePhase = 0;
+  private long swapsTried = 0;
+  private long swapsMade = 0;
+  private AnnealingMutator[] ladder;
+  private double[] temperatures;
+  private double[] rungGaps;
+  private int level = 0;
+  private int lastLevelCheck = 0;
+  private long levelFitness = -1;
+  private Fitness fullFitCalc;
+  private List<Configuration> tribeConfigurations;
+  private List<Configuration> racing;
+  private int rung = 0;
+  private long rungStart;
+  private int retiredGenerations = 0;
+  private int retiredImprovements = 0;
+  private int retiredCrossovers = 0;
 
   /**
    * Create a new Triangle genome with specified number of tribes
    * 
    * @param target the target image for the genome
    * @param numberOfTribes the number of tribes to create
+   * @param data statistics shown by the GUI
+   * @param initialPopulation genomes every tribe starts with
+   * @param maximumPopulation genomes every tribe holds at most
+   * @param evolutionMode how every tribe evolves its population
+   * @param mutatorType mutator every tribe uses, parallel tempering always
+   *          anneals
+   * @param runMode how the tribes work together
+   * @param triangleCount number of triangles of every genome
+   * @param growTriangles start with Constants.GROWTH_INITIAL_TRIANGLES and
+   *          grow to triangleCount whenever a tribe stalls
+   * @param seeding how the genomes of the initial populations are created
    */
   public TriangleGenome(BufferedImage target, int numberOfTribes, TriangleGenomeData data,
-      int initialPopulation, int maximumPopulation)
+      int initialPopulation, int maximumPopulation, EvolutionMode evolutionMode, MutatorType mutatorType,
+      RunMode runMode, int triangleCount, boolean growTriangles, SeedingStrategy seeding)
   {
+    this.seeding = seeding;
+    this.triangleCount = triangleCount;
+    this.growTriangles = growTriangles;
+    this.evolutionMode = evolutionMode;
+    this.mutatorType = mutatorType;
+    this.runMode = runMode;
     this.initialPopulation = initialPopulation;
     this.maximumPopulation = maximumPopulation;
     targetImage = target;
+    this.target = new Target(target);
     tribeDataList = new ArrayList<>(numberOfTribes);
     for (int i = 0; i < numberOfTribes; i++)
     {
-      tribeDataList.add(new TribeData(target.getWidth(), target.getHeight(), maximumPopulation));
+      tribeDataList.add(new TribeData(maximumPopulation));
     }
     this.numberOfTribes = numberOfTribes;
     tribeThreads = new ArrayList<>(numberOfTribes);
@@ -71,19 +187,366 @@ public class TriangleGenome implements Runnable
   private List<Tribe> createInitialPopulation(int numberOfTribes)
   {
     List<Tribe> tribes = new ArrayList<Tribe>(numberOfTribes);
-    int mutatorChoice = 0; // Start with hill climbing only to meet requirements
+    if (runMode == RunMode.PROGRESSIVE)
+    {
+      level = Constants.PROGRESSIVE_LEVELS;
+      // Too small a target cannot hold the shapes of the image
+      while (level > 0 && Math.min(target.getLevel(level).getWidth(),
+          target.getLevel(level).getHeight()) < Constants.PROGRESSIVE_MIN_SIZE)
+      {
+        level--;
+      }
+    }
+    fitCalc = new Fitness(target.getLevel(level), FitnessType.DISTANCE_SQUARED);
+    // Genomes of a lower level are shown and scored at the full resolution
+    fullFitCalc = level == 0 ? fitCalc : new Fitness(target, FitnessType.DISTANCE_SQUARED);
+    if (runMode == RunMode.RACING)
+    {
+      tribeConfigurations = createRaceConfigurations();
+      racing = new ArrayList<>();
+      for (Configuration c : tribeConfigurations)
+      {
+        if (!racing.contains(c)) racing.add(c);
+      }
+    }
+    int startTriangles = getStartTriangles();
     for (int id = 0; id < numberOfTribes; id++)
     {
-      BufferedImage imageBuf = new BufferedImage(targetImage.getWidth(), targetImage.getHeight(),
-          Constants.BUF_IMG_TYPE);
-      Fitness fitCalc = new Fitness(targetImage, imageBuf, FitnessType.DISTANCE_SQUARED);
-      tribes.add(new Tribe(targetImage, fitCalc, id, tribeDataList.get(id), mutatorChoice, initialPopulation,
-          maximumPopulation));
-      mutatorChoice = 1 - mutatorChoice;
+      if (runMode == RunMode.RACING)
+      {
+        tribes.add(createRacingTribe(id, tribeConfigurations.get(id), null));
+      }
+      else if (runMode == RunMode.PARALLEL_TEMPERING)
+      {
+        if (ladder == null) createLadder();
+        // One replica per tribe, annealed at its rung of the ladder
+        Tribe tribe = new Tribe(fitCalc, id, tribeDataList.get(id), MutatorType.ANNEALING, 1, 1,
+            EvolutionMode.HILL_CLIMBING, startTriangles, triangleCount, seeding, Constants.DEFAULT_SEED_ALPHA, null);
+        ladder[id] = new AnnealingMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc), temperatures[id], false);
+        tribe.setMutator(ladder[id]);
+        tribes.add(tribe);
+      }
+      else
+      {
+        tribes.add(new Tribe(fitCalc, id, tribeDataList.get(id), mutatorType,
+            initialPopulation, maximumPopulation, evolutionMode, startTriangles, triangleCount, seeding,
+            Constants.DEFAULT_SEED_ALPHA, null));
+      }
     }
     return tribes;
   }
 
+  /**
+   * Get the number of triangles every genome starts with
+   * 
+   * @return Constants.GROWTH_INITIAL_TRIANGLES for growing genomes, else the
+   *         triangle count
+   */
+  private int getStartTriangles()
+  {
+    return growTriangles ? Math.min(Constants.GROWTH_INITIAL_TRIANGLES, triangleCount) : triangleCount;
+  }
+
+  /**
+   * Pick the configuration of every tribe of a race, the first tribe runs the
+   * chosen settings and the others distinct random ones, repeated if there are
+   * more tribes than configurations
+   * 
+   * @return configuration of every tribe
+   */
+  private List<Configuration> createRaceConfigurations()
+  {
+    Configuration chosen = new Configuration(mutatorType, initialPopulation, Constants.DEFAULT_SEED_ALPHA);
+    List<Configuration> others = new ArrayList<>();
+    for (MutatorType m : Constants.RACING_MUTATORS)
+    {
+      for (int population : Constants.RACING_POPULATIONS)
+      {
+        for (int alpha : Constants.RACING_ALPHAS)
+        {
+          if (m == chosen.mutatorType && population == chosen.population && alpha == chosen.alpha) continue;
+          others.add(new Configuration(m, population, alpha));
+        }
+      }
+    }
+    Collections.shuffle(others, Constants.RANDOM);
+    List<Configuration> configurations = new ArrayList<>(numberOfTribes);
+    configurations.add(chosen);
+    configurations.addAll(others.subList(0, Math.min(others.size(), numberOfTribes - 1)));
+    for (int i = 0; configurations.size() < numberOfTribes; i++)
+    {
+      configurations.add(configurations.get(i));
+    }
+    return configurations;
+  }
+
+  /**
+   * Create a tribe of a race
+   * 
+   * @param id tribe id
+   * @param configuration settings of the tribe
+   * @param source tribe whose population is copied, or null to seed one
+   * @return new tribe
+   */
+  private Tribe createRacingTribe(int id, Configuration configuration, Tribe source)
+  {
+    int maximum = Math.max(configuration.population, maximumPopulation);
+    return new Tribe(fitCalc, id, tribeDataList.get(id), configuration.mutatorType,
+        configuration.population, maximum, evolutionMode, getStartTriangles(), triangleCount, seeding,
+        configuration.alpha, source == null ? null : source.copyPopulation(maximum));
+  }
+
+  /**
+   * Check if configurations are still racing
+   * 
+   * @return true until Constants.RACING_FINALISTS configurations remain
+   */
+  private boolean isRacing()
+  {
+    return racing != null && racing.size() > Constants.RACING_FINALISTS;
+  }
+
+  /**
+   * End the rung of a race once it ran its time, keeping the better half of
+   * the configurations by the best genome of their tribes
+   * 
+   * Rungs are timed by the clock, as the generations of different mutators
+   * take different time. Every tribe of a dropped configuration is stopped
+   * and started again on a copy of the population of a surviving one, the
+   * best first, so survivors take over its core
+   * 
+   * @throws InterruptedException if interrupted while a tribe stops
+   */
+  private void raceIfDue() throws InterruptedException
+  {
+    if (System.nanoTime() - rungStart < (Constants.RACING_RUNG_MILLIS << rung) * 1000000) return;
+
+    Map<Configuration, Long> best = new IdentityHashMap<>();
+    Map<Configuration, Tribe> bestTribe = new IdentityHashMap<>();
+    for (int i = 0; i < tribes.size(); i++)
+    {
+      Tribe t = tribes.get(i);
+      long fitness;
+      synchronized (t.getStepLock())
+      {
+        fitness = t.getGenome(0).getFitness();
+      }
+      Configuration c = tribeConfigurations.get(i);
+      if (!best.containsKey(c) || fitness < best.get(c))
+      {
+        best.put(c, fitness);
+        bestTribe.put(c, t);
+      }
+    }
+    racing.sort(Comparator.comparingLong(best::get));
+    int survivors = Math.max(Constants.RACING_FINALISTS, (racing.size() + 1) / 2);
+    racing.subList(survivors, racing.size()).clear();
+
+    int next = 0;
+    for (int i = 0; i < tribes.size(); i++)
+    {
+      if (racing.contains(tribeConfigurations.get(i))) continue;
+      Configuration c = racing.get(next++ % racing.size());
+      replaceTribe(i, c, bestTribe.get(c));
+    }
+    rung++;
+    rungStart = System.nanoTime();
+  }
+
+  /**
+   * Stop a tribe and start a new one in its place on a copy of another tribe
+   * 
+   * @param id tribe id
+   * @param configuration settings of the new tribe
+   * @param source tribe whose population is copied
+   * @throws InterruptedException if interrupted while the tribe stops
+   */
+  private void replaceTribe(int id, Configuration configuration, Tribe source) throws InterruptedException
+  {
+    Thread old = tribeThreads.get(id);
+    old.interrupt();
+    old.join();
+    TribeData tribeData = tribeDataList.get(id);
+    synchronized (tribeData)
+    {
+      retiredGenerations += tribeData.generations;
+      retiredImprovements += tribeData.improvements;
+      retiredCrossovers += tribeData.crossovers;
+    }
+    Tribe tribe = createRacingTribe(id, configuration, source);
+    tribeConfigurations.set(id, configuration);
+    tribes.set(id, tribe);
+    Thread tt = new Thread(tribe);
+    tribeThreads.set(id, tt);
+    tt.start();
+  }
+
+  /**
+   * Space the starting temperatures of parallel tempering geometrically from
+   * Constants.TEMPERING_MIN_TEMPERATURE for the first tribe to
+   * Constants.TEMPERING_MAX_TEMPERATURE for the last
+   */
+  private void createLadder()
+  {
+    ladder = new AnnealingMutator[numberOfTribes];
+    temperatures = new double[numberOfTribes];
+    rungGaps = new double[Math.max(0, numberOfTribes - 1)];
+    double gap = numberOfTribes == 1 ? 0 : Math.log(Constants.TEMPERING_MAX_TEMPERATURE
+        / Constants.TEMPERING_MIN_TEMPERATURE) / (numberOfTribes - 1);
+    Arrays.fill(rungGaps, gap);
+    temperatures[0] = Constants.TEMPERING_MIN_TEMPERATURE;
+    for (int i = 1; i < numberOfTribes; i++)
+    {
+      temperatures[i] = temperatures[i - 1] * Math.exp(rungGaps[i - 1]);
+    }
+  }
+
+  /**
+   * Get the temperature of a tribe in parallel tempering
+   * 
+   * @param id tribe id
+   * @return temperature in units of fitness
+   */
+  public double getTemperature(int id)
+  {
+    return temperatures[id];
+  }
+
+  /**
+   * Widen the gap between two neighbouring temperatures of parallel tempering
+   * after a swap and narrow it after a refused one, so about
+   * Constants.TEMPERING_TARGET_SWAP_RATE of the swaps are made. The coldest
+   * temperature stays put
+   * 
+   * @param swapped for every pair of neighbouring tribes, 1 if it swapped, 0
+   *          if it refused and -1 if no swap was offered
+   */
+  private void adaptLadder(int[] swapped)
+  {
+    for (int i = 0; i < rungGaps.length; i++)
+    {
+      if (swapped[i] == -1) continue;
+      rungGaps[i] = Math.max(0, rungGaps[i] + Constants.TEMPERING_ADAPT_RATE
+          * (swapped[i] - Constants.TEMPERING_TARGET_SWAP_RATE));
+    }
+    for (int i = 1; i < tribes.size(); i++)
+    {
+      temperatures[i] = temperatures[i - 1] * Math.exp(rungGaps[i - 1]);
+      synchronized (tribes.get(i).getStepLock())
+      {
+        ladder[i].setTemperature(temperatures[i]);
+      }
+    }
+  }
+
+  /**
+   * Offer a swap of genomes to every other pair of neighbouring temperatures,
+   * alternating between the even and the odd pairs
+   * 
+   * A pair swaps with probability min(1, exp((f1 - f2) * (1 / t1 - 1 / t2))),
+   * so the colder tribe always takes a fitter genome. Only the references are
+   * swapped
+   */
+  private void exchangeReplicas()
+  {
+    int[] swapped = new int[rungGaps.length];
+    Arrays.fill(swapped, -1);
+    for (int i = exchangePhase; i + 1 < tribes.size(); i += 2)
+    {
+      Tribe colder = tribes.get(i);
+      Tribe hotter = tribes.get(i + 1);
+      synchronized (colder.getStepLock())
+      {
+        synchronized (hotter.getStepLock())
+        {
+          Genome coldGenome = colder.getReplica();
+          Genome hotGenome = hotter.getReplica();
+          double exponent = (coldGenome.getFitness() - hotGenome.getFitness())
+              * (1 / getTemperature(i) - 1 / getTemperature(i + 1));
+          swapsTried++;
+          swapped[i] = 0;
+          if (exponent >= 0 || Constants.RANDOM.nextDouble() < Math.exp(exponent))
+          {
+            colder.setReplica(hotGenome);
+            hotter.setReplica(coldGenome);
+            swapsMade++;
+            swapped[i] = 1;
+          }
+        }
+      }
+    }
+    exchangePhase = 1 - exchangePhase;
+    adaptLadder(swapped);
+  }
+
+  /**
+   * Restart every tribe that stagnated, its first seeded genome may be a copy
+   * of the best genome of all tribes when Constants.STAGNATION_MIGRATION is
+   * set
+   */
+  private void restartStagnantTribes()
+  {
+    Genome migrant = null;
+    if (Constants.STAGNATION_MIGRATION)
+    {
+      TribeData best = tribeDataList.get(bestGenomeTribe);
+      synchronized (best)
+      {
+        migrant = best.bestGenome;
+      }
+    }
+    for (Tribe t : tribes)
+    {
+      t.restartIfStagnant(migrant);
+    }
+  }
+
+  /**
+   * Double the resolution of the target every tribe works on when the best
+   * genome gained less than Constants.PROGRESSIVE_MIN_GAIN of its fitness
+   * while every tribe ran another Constants.PROGRESSIVE_WINDOW generations
+   */
+  private void refineIfStalled()
+  {
+    int tribeGenerations = Integer.MAX_VALUE;
+    for (TribeData tribeData : tribeDataList)
+    {
+      synchronized (tribeData)
+      {
+        tribeGenerations = Math.min(tribeGenerations, tribeData.generations);
+      }
+    }
+    if (tribeGenerations - lastLevelCheck < Constants.PROGRESSIVE_WINDOW) return;
+    lastLevelCheck = tribeGenerations;
+    long best = bestGenomeFitness;
+    boolean stalled = levelFitness != -1 && levelFitness - best < levelFitness * Constants.PROGRESSIVE_MIN_GAIN;
+    levelFitness = best;
+    if (!stalled) return;
+
+    level--;
+    Fitness old = fitCalc;
+    fitCalc = new Fitness(target.getLevel(level), FitnessType.DISTANCE_SQUARED);
+    for (Tribe t : tribes)
+    {
+      t.rescale(fitCalc);
+    }
+    // No tribe scores with the old target any more
+    old.close();
+    levelFitness = -1;
+    genStep = generations;
+    updateData();
+  }
+
+  /**
+   * Get the share of replica swaps that were made in parallel tempering
+   * 
+   * @return swaps made over swaps tried, 0 before the first try
+   */
+  public double getSwapRate()
+  {
+    return swapsTried == 0 ? 0 : swapsMade / (double) swapsTried;
+  }
+
   /**
    * Get a tribe from the list of tribes
    * 
@@ -185,14 +648,35 @@ public class TriangleGenome implements Runnable
       tribeThreads.add(tt);
       tt.start();
     }
+    rungStart = System.nanoTime();
     while (running)
     {
       try
       {
+        long pauseStart = System.nanoTime();
         checkPauseState();
+        // A paused race does not use up its rung
+        rungStart += System.nanoTime() - pauseStart;
         gatherGenerations();
         updateData();
-        setUpBreeding();
+        if (runMode == RunMode.PARALLEL_TEMPERING)
+        {
+          exchangeReplicas();
+        }
+        else
+        {
+          if (level > 0) refineIfStalled();
+          // Configurations race on their own
+          if (isRacing())
+          {
+            raceIfDue();
+          }
+          else
+          {
+            restartStagnantTribes();
+            setUpBreeding();
+          }
+        }
         Thread.sleep(500);
       }
       catch (InterruptedException e)
@@ -202,10 +686,31 @@ public class TriangleGenome implements Runnable
         {
           tt.interrupt();
         }
+        releaseCanvases();
       }
     }
   }
 
+  /**
+   * Wait for the tribes to stop and release the fitness canvases
+   */
+  private void releaseCanvases()
+  {
+    try
+    {
+      for (Thread tt : tribeThreads)
+      {
+        tt.join();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      return;
+    }
+    fitCalc.close();
+    if (fullFitCalc != fitCalc) fullFitCalc.close();
+  }
+
   /**
    * Update data from all tribes for global data
    */
@@ -217,6 +722,7 @@ public class TriangleGenome implements Runnable
       synchronized (data)
       {
         data.averageHammDist = 0;
+        data.restarts = 0;
         long fitness = Long.MAX_VALUE;
         for (int i = 0; i < numberOfTribes; i++)
         {
@@ -232,6 +738,7 @@ public class TriangleGenome implements Runnable
           }
 
           data.averageHammDist += tribeData.averageHammDist;
+          data.restarts += tribeData.restarts;
         }
 
         data.averageHammDist /= numberOfTribes;
@@ -239,12 +746,20 @@ public class TriangleGenome implements Runnable
         TribeData tribeData = tribeDataList.get(bestGenomeTribe);
         synchronized (tribeData)
         {
-          Graphics g = data.bestImage.createGraphics();
-          g.drawImage(tribeData.bestImage, 0, 0, null);
+          // The best genome is always shown at the full resolution
+          data.bestGenomeCopy = level == 0 ? tribeData.bestGenome
+              : tribeData.bestGenome.scaledCopy(targetImage.getWidth(), targetImage.getHeight());
+          data.scaledWidth = fitCalc.getTarget().getWidth();
+          data.scaledHeight = fitCalc.getTarget().getHeight();
+          data.race = racing == null ? "-" : racing.size() + " left, best " + tribeConfigurations.get(bestGenomeTribe);
           data.generations = generations;
           data.improvements = improvements;
           data.crossovers = crossovers;
           data.fitness = fitness;
+          data.skippedEvaluations = fitCalc.getSkippedEvaluations();
+          data.screenedEvaluations = fitCalc.getScreenedEvaluations();
+          data.falseRejections = fitCalc.getFalseRejections();
+          data.auditedRejections = fitCalc.getAuditedRejections();
         }
       }
     }
@@ -276,14 +791,18 @@ public class TriangleGenome implements Runnable
       // Grab best genome from all
       for (Tribe t : tribes)
       {
-        int i = 1;
-        breeders.add(t.getGenome(0));
-        if (t.getPopulationSize() > 1)
+        // A tribe may still finish its step, which sorts the population
+        synchronized (t.getStepLock())
         {
-          while (i < Math.min(t.getPopulationSize() - 1, initialPopulation - 1))
+          int i = 1;
+          breeders.add(t.getGenome(0));
+          if (t.getPopulationSize() > 1)
           {
-            breeders.add(t.getRandomLowerGenome());
-            i++;
+            while (i < Math.min(t.getPopulationSize() - 1, initialPopulation - 1))
+            {
+              breeders.add(t.getRandomLowerGenome());
+              i++;
+            }
           }
         }
       }
@@ -308,19 +827,16 @@ public class TriangleGenome implements Runnable
    */
   private void gatherGenerations()
   {
-    generations = 0;
-    improvements = 0;
-    crossovers = 0;
+    generations = retiredGenerations;
+    improvements = retiredImprovements;
+    crossovers = retiredCrossovers;
     for (TribeData tribeData : tribeDataList)
     {
       synchronized (tribeData)
       {
-        for (int i = 0; i < numberOfTribes; i++)
-        {
-          generations += tribeData.generations;
-          crossovers += tribeData.crossovers;
-          improvements += tribeData.improvements;
-        }
+        generations += tribeData.generations;
+        crossovers += tribeData.crossovers;
+        improvements += tribeData.improvements;
       }
     }
   }
@@ -334,8 +850,10 @@ public class TriangleGenome implements Runnable
   {
     synchronized (data)
     {
-      Graphics g = image.createGraphics();
-      g.drawImage(data.bestImage, 0, 0, null);
+      if (data.bestGenomeCopy != null)
+      {
+        data.bestGenomeCopy.drawImage(image);
+      }
     }
   }
 
@@ -353,7 +871,18 @@ public class TriangleGenome implements Runnable
   }
 
   /**
-   * The best known genome fitness
+   * Score a genome at the full resolution of the target
+   * 
+   * @param genome genome the size of the target
+   * @return fitness at the full resolution
+   */
+  public long findFullFitness(Genome genome)
+  {
+    return fullFitCalc.findFitness(genome);
+  }
+
+  /**
+   * The best known genome fitness, at the resolution the tribes work on
    * 
    * @return
    */
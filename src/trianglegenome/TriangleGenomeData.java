@@ -1,7 +1,5 @@
 package trianglegenome;
 
-import java.awt.image.BufferedImage;
-
 /**
  * Global data share class
  * 
@@ -10,16 +8,24 @@ import java.awt.image.BufferedImage;
  */
 public class TriangleGenomeData
 {
-  public BufferedImage bestImage;
   public int generations;
   public int improvements;
   public int crossovers;
   public long fitness;
   public double averageHammDist;
+  public long skippedEvaluations;
+  public long screenedEvaluations;
+  public long falseRejections;
+  public long auditedRejections;
+  public int scaledWidth;
+  public int scaledHeight;
+  public int restarts;
+  public String race = "-";
   public Genome bestGenomeCopy;
 
   /**
-   * Create a new triangle genome for specific number of tribes
+   * Create a new triangle genome for specific number of tribes, the best genome
+   * is only drawn when an image is needed
    * 
    * @param numberOfTribes
    * @param width
@@ -27,6 +33,5 @@ public class TriangleGenomeData
    */
   public TriangleGenomeData(int numberOfTribes, int width, int height)
   {
-    bestImage = new BufferedImage(width, height, Constants.BUF_IMG_TYPE);
   }
 }
@@ -1,18 +1,35 @@
 package trianglegenome;
 
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import trianglegenome.util.AdaptiveMutator;
+import trianglegenome.util.AnnealingMutator;
+import trianglegenome.util.CompoundMutator;
 import trianglegenome.util.CrossOver;
+import trianglegenome.util.DelaunaySeeder;
+import trianglegenome.util.ErrorGuidedGeneSelector;
+import trianglegenome.util.EvolutionStrategyMutator;
 import trianglegenome.util.Fitness;
-import trianglegenome.util.HillClimbingMutator;
+import trianglegenome.util.GeneClassSelector;
+import trianglegenome.util.GeneClassSelector.GeneClass;
+import trianglegenome.util.GeneSelector;
+import trianglegenome.util.HillClimbingRectMutator;
+import trianglegenome.util.LineSearchMutator;
 import trianglegenome.util.Mutator;
+import trianglegenome.util.MutatorType;
+import trianglegenome.util.OptimalColorMutator;
 import trianglegenome.util.Pair;
+import trianglegenome.util.PartitionedMutator;
 import trianglegenome.util.RandomMutator;
+import trianglegenome.util.SeedingStrategy;
+import trianglegenome.util.SpsaMutator;
+import trianglegenome.util.TriangleRecycler;
+import trianglegenome.util.ZOrderMutator;
 
 /**
  * Tribe object for the triangle genome, thread functionality doesn't work right
@@ -20,7 +37,23 @@ import trianglegenome.util.RandomMutator;
  */
 public class Tribe implements Runnable
 {
-  private BufferedImage targetImage;
+  /**
+   * How a tribe evolves its population
+   */
+  public enum EvolutionMode
+  {
+    /**
+     * Hill climb one genome at a time, small populations
+     */
+    HILL_CLIMBING,
+
+    /**
+     * Tournament selection and crossover with batches of offspring evaluated in
+     * parallel, large populations
+     */
+    STEADY_STATE
+  }
+
   private List<Genome> population;
   private List<Genome> genomesToClimb;
   private int improvements = 0;
@@ -38,61 +71,259 @@ public class Tribe implements Runnable
   private final int initialPopulation;
   private final int maximumPopulation;
   private int crossovers;
+  private final EvolutionMode evolutionMode;
+  private final SeedingStrategy seeding;
+  private final int seedAlpha;
+  private final MutatorType mutatorType;
+  private RandomMutator offspringMutator;
+  private final Object stepLock = new Object();
+  private TriangleRecycler recycler;
+  private int lastRecycle = 0;
+  private final int triangleCount;
+  private final int maximumTriangles;
+  private int lastGrowthCheck = 0;
+  private long windowFitness = -1;
+  private DelaunaySeeder seeder;
+  private final LinkedList<long[]> samples = new LinkedList<>();
+  private int restarts = 0;
+  private long evaluations = 0;
 
   /**
    * Create a new tribe
    * 
-   * @param target target image
+   * @param fitCalc scores the genomes against the target
+   * @param id tribe id
+   * @param tribeData statistics of the tribe
+   * @param mutatorType operator the tribe climbs with
+   * @param initialPopulation genomes the tribe starts with
+   * @param maximumPopulation genomes the tribe holds at most
+   * @param evolutionMode how the tribe evolves, a steady state tribe starts
+   *          with its maximum population
+   * @param triangleCount number of triangles the genomes start with
+   * @param maximumTriangles number of triangles the tribe grows its
+   *          genomes to when it stalls, no larger than triangleCount to never
+   *          grow
+   * @param seeding how the genomes of the initial population are created
+   * @param seedAlpha alpha of randomly seeded triangles, Delaunay seeding
+   *          uses Constants.DELAUNAY_ALPHA
+   * @param adopted genomes to start with in place of a seeded population,
+   *          owned by the tribe from now on, or null
    */
-  public Tribe(BufferedImage target, Fitness fitCalc, int id, TribeData tribeData, int mutatorChoice,
-      int initialPopulation, int maximumPopulation)
+  public Tribe(Fitness fitCalc, int id, TribeData tribeData, MutatorType mutatorType,
+      int initialPopulation, int maximumPopulation, EvolutionMode evolutionMode, int triangleCount,
+      int maximumTriangles, SeedingStrategy seeding, int seedAlpha, List<Genome> adopted)
   {
-    targetImage = target;
+    this.seeding = seeding;
+    this.seedAlpha = seedAlpha;
+    this.mutatorType = mutatorType;
+    this.triangleCount = triangleCount;
+    this.maximumTriangles = maximumTriangles;
     this.fitCalc = fitCalc;
     this.id = id;
     this.tribeData = tribeData;
-    this.initialPopulation = initialPopulation;
+    this.evolutionMode = evolutionMode;
     this.maximumPopulation = maximumPopulation;
-    population = createInitialPopulation();
-    switch (mutatorChoice)
-    {
-      case 0:
-        mutator = new HillClimbingMutator(fitCalc);
-        break;
-      case 1:
-        mutator = new RandomMutator(fitCalc, targetImage.getWidth(), targetImage.getHeight());
-        break;
-      default:
-        System.out.println("Unexpected Mutator");
-        mutator = null;
+    if (evolutionMode == EvolutionMode.STEADY_STATE)
+    {
+      this.initialPopulation = maximumPopulation;
+      offspringMutator = new RandomMutator(fitCalc, fitCalc.getTarget().getWidth(), fitCalc.getTarget().getHeight());
+    }
+    else
+    {
+      this.initialPopulation = initialPopulation;
     }
+    population = createInitialPopulation(adopted);
+    mutator = createMutator(mutatorType, new ErrorGuidedGeneSelector(fitCalc));
     genomesToClimb = new ArrayList<Genome>(population);
+    recycler = new TriangleRecycler(fitCalc);
 
     NUMBER_OF_BREEDERS = initialPopulation;
     updateTribeData();
   }
 
+  /**
+   * Create the mutator of the tribe
+   * 
+   * @param mutatorType operator to use
+   * @param selector chooses the genes to change
+   * @return new mutator
+   */
+  private Mutator createMutator(MutatorType mutatorType, GeneSelector selector)
+  {
+    int width = fitCalc.getTarget().getWidth();
+    int height = fitCalc.getTarget().getHeight();
+    switch (mutatorType)
+    {
+      case HILL_CLIMBING:
+        return new OptimalColorMutator(fitCalc, new HillClimbingRectMutator(fitCalc, selector),
+            Constants.OPTIMAL_COLOR_SHARE, selector);
+      case RANDOM:
+        return new RandomMutator(fitCalc, width, height, selector);
+      case OPTIMAL_COLOR:
+        return new OptimalColorMutator(fitCalc, new HillClimbingRectMutator(fitCalc, selector), 1, selector);
+      case ANNEALING:
+        return new AnnealingMutator(fitCalc, selector);
+      case EVOLUTION_STRATEGY:
+        return new EvolutionStrategyMutator(fitCalc, selector);
+      case SPSA:
+        return new SpsaMutator(fitCalc, selector);
+      case LINE_SEARCH:
+        return new LineSearchMutator(fitCalc, selector);
+      case COMPOUND:
+        return new CompoundMutator(fitCalc, selector);
+      case Z_ORDER:
+        return new ZOrderMutator(fitCalc, selector);
+      case PARTITIONED:
+        return new PartitionedMutator(fitCalc, selector);
+      case ADAPTIVE:
+        // Climbing and random operators for every class of gene
+        List<Mutator> arms = new ArrayList<>();
+        for (GeneClass geneClass : GeneClass.values())
+        {
+          GeneSelector classSelector = new GeneClassSelector(selector, geneClass);
+          arms.add(new HillClimbingRectMutator(fitCalc, classSelector));
+          arms.add(new RandomMutator(fitCalc, width, height, classSelector));
+        }
+        arms.add(createMutator(MutatorType.OPTIMAL_COLOR, selector));
+        return new AdaptiveMutator(arms);
+      default:
+        System.out.println("Unexpected Mutator");
+        return null;
+    }
+  }
+
   /**
    * Create an initial population for the tribe
    * 
+   * @param adopted genomes to start with, or null to seed initialPopulation
+   *          genomes
    * @return initial population of genomes
    */
-  private List<Genome> createInitialPopulation()
+  private List<Genome> createInitialPopulation(List<Genome> adopted)
   {
     population = new ArrayList<Genome>(maximumPopulation);
-    for (int i = 0; i < initialPopulation; i++)
+    if (adopted != null)
+    {
+      population.addAll(adopted.subList(0, Math.min(adopted.size(), maximumPopulation)));
+    }
+    else
     {
-      Genome g = Genome.randomGenomeFixedAlpha(targetImage, 80);
-      if (Constants.DEBUG_VALID)
+      for (int i = 0; i < initialPopulation; i++)
       {
-        if (!Genome.validGenome(g)) System.err.println("Invalid genome created");
+        population.add(seedGenome(triangleCount));
       }
-      g.setFitness(fitCalc.findFitness(g));
-      population.add(g);
     }
+    fitCalc.evaluateAll(population);
     return population;
   }
 
+  /**
+   * Create a new genome by the seeding strategy of the tribe
+   * 
+   * @param count number of triangles
+   * @return new genome, not yet scored
+   */
+  private Genome seedGenome(int count)
+  {
+    if (seeding == SeedingStrategy.DELAUNAY && seeder == null)
+    {
+      seeder = new DelaunaySeeder(fitCalc.getTarget());
+    }
+    Genome g = seeding == SeedingStrategy.DELAUNAY ? seeder.createGenome(Constants.RANDOM, count)
+        : Genome.targetColoredGenome(fitCalc.getTarget(), Constants.RANDOM, seedAlpha, count);
+    if (Constants.DEBUG_VALID)
+    {
+      if (!Genome.validGenome(g)) System.err.println("Invalid genome created");
+    }
+    return g;
+  }
+
+  /**
+   * Seed the worse half of the population again when the best genome gained
+   * less than Constants.STAGNATION_MIN_GAIN of its fitness per
+   * Constants.STAGNATION_WINDOW evaluations of the tribe, measured over the
+   * last window. Evaluations rather than generations are counted as a
+   * generation of some mutators takes many more of them. A tribe whose
+   * genomes can still grow is not restarted. Every call takes a sample of the
+   * best fitness, so it should be called regularly
+   * 
+   * @param migrant copy of the best genome of all tribes, taken in place of
+   *          the first seeded genome if it is fitter than the best of this
+   *          tribe, or null
+   * @return true if the tribe was restarted
+   */
+  public boolean restartIfStagnant(Genome migrant)
+  {
+    synchronized (stepLock)
+    {
+      Collections.sort(population);
+      Genome best = population.get(0);
+      // Keep the latest sample at least a window old as the oldest
+      samples.addLast(new long[] { evaluations, best.getFitness() });
+      while (samples.size() > 1 && evaluations - samples.get(1)[0] >= Constants.STAGNATION_WINDOW)
+      {
+        samples.removeFirst();
+      }
+      long[] oldest = samples.getFirst();
+      if (evaluations - oldest[0] < Constants.STAGNATION_WINDOW || best.getTriangles().size() < maximumTriangles)
+      {
+        return false;
+      }
+      double gainPerEvaluation = (double) (oldest[1] - best.getFitness()) / (evaluations - oldest[0]);
+      if (gainPerEvaluation >= oldest[1] * Constants.STAGNATION_MIN_GAIN / Constants.STAGNATION_WINDOW)
+      {
+        return false;
+      }
+
+      // The migrant may come from another size during a progressive run
+      boolean migrate = migrant != null && migrant.getFitness() < best.getFitness()
+          && migrant.getWidth() == best.getWidth();
+      List<Genome> seeded = new ArrayList<>();
+      int worse = population.size() / 2;
+      for (int i = population.size() - worse; i < population.size(); i++)
+      {
+        Genome g = migrate && seeded.isEmpty() ? migrant.deepCopy() : seedGenome(best.getTriangles().size());
+        population.set(i, g);
+        seeded.add(g);
+      }
+      // A tribe of one can only take the migrant
+      if (worse == 0 && migrate)
+      {
+        population.set(0, migrant.deepCopy());
+        seeded.add(population.get(0));
+      }
+      if (seeded.isEmpty()) return false;
+      fitCalc.evaluateAll(seeded);
+
+      restarts++;
+      samples.clear();
+      genomesToClimb.clear();
+      genomesToClimb.addAll(population);
+      updateTribeData();
+      return true;
+    }
+  }
+
+  /**
+   * Copy the genomes of the tribe, it may keep running
+   * 
+   * @param count largest number of genomes to copy
+   * @return copies of the best genomes first, not yet scored
+   */
+  public List<Genome> copyPopulation(int count)
+  {
+    List<Genome> copies = new ArrayList<>();
+    synchronized (stepLock)
+    {
+      Collections.sort(population);
+      for (int i = 0; i < Math.min(population.size(), count); i++)
+      {
+        copies.add(population.get(i).deepCopy());
+      }
+    }
+    return copies;
+  }
+
   /**
    * Get the current population size
    * 
@@ -142,18 +373,116 @@ public class Tribe implements Runnable
    */
   public void next()
   {
-    if (!genomesToClimb.isEmpty())
+    synchronized (stepLock)
     {
-      climbGenes();
+      if (evolutionMode == EvolutionMode.STEADY_STATE)
+      {
+        steadyStateStep();
+        updateTribeData();
+      }
+      else if (!genomesToClimb.isEmpty())
+      {
+        climbGenes();
+      }
+      else
+      {
+        genomesToClimb.addAll(population);
+        climbGenes();
+        updateTribeData();
+      }
     }
-    else
+  }
+
+  /**
+   * Get the lock held while the tribe changes its population, hold it to read
+   * or swap genomes from another thread
+   * 
+   * @return step lock
+   */
+  public Object getStepLock()
+  {
+    return stepLock;
+  }
+
+  /**
+   * Replace the mutator of the tribe, only before the tribe runs
+   * 
+   * @param mutator new mutator
+   */
+  public void setMutator(Mutator mutator)
+  {
+    this.mutator = mutator;
+  }
+
+  /**
+   * Move the tribe to a target of another size, every genome and pending
+   * breeder is scaled to it and scored again
+   * 
+   * @param fitCalc fitness calculator of the new target
+   */
+  public void rescale(Fitness fitCalc)
+  {
+    synchronized (stepLock)
     {
+      int width = fitCalc.getTarget().getWidth();
+      int height = fitCalc.getTarget().getHeight();
+      this.fitCalc = fitCalc;
+      for (Genome g : population)
+      {
+        g.rescale(width, height);
+      }
+      if (breeders != null)
+      {
+        for (Genome g : breeders)
+        {
+          g.rescale(width, height);
+        }
+      }
+      fitCalc.evaluateAll(population);
+      mutator = createMutator(mutatorType, new ErrorGuidedGeneSelector(fitCalc));
+      if (offspringMutator != null) offspringMutator = new RandomMutator(fitCalc, width, height);
+      recycler = new TriangleRecycler(fitCalc);
+      seeder = null;
+      samples.clear();
+      genomesToClimb.clear();
       genomesToClimb.addAll(population);
-      climbGenes();
+      windowFitness = -1;
       updateTribeData();
     }
   }
 
+  /**
+   * Get the genome a replica exchange swaps, the fittest of the population,
+   * only call while holding the step lock
+   * 
+   * @return fittest genome
+   */
+  public Genome getReplica()
+  {
+    Collections.sort(population);
+    return population.get(0);
+  }
+
+  /**
+   * Swap in the genome of another tribe in place of the fittest genome, the
+   * reference is kept so no copy is made, only call while holding the step
+   * lock
+   * 
+   * @param genome genome to take over
+   */
+  public void setReplica(Genome genome)
+  {
+    Collections.sort(population);
+    Genome old = population.set(0, genome);
+    for (int i = 0; i < genomesToClimb.size(); i++)
+    {
+      if (genomesToClimb.get(i) == old)
+      {
+        genomesToClimb.set(i, genome);
+      }
+    }
+  }
+
   /**
    * Get a specific genome from the population
    * 
@@ -194,39 +523,64 @@ public class Tribe implements Runnable
   {
     Collections.sort(population);
     Genome g = population.get(0);
+    for (Genome genome : population)
+    {
+      // Annealing genomes may have left a better genome behind
+      if (genome.elite != null && genome.elite.getFitness() < g.getFitness()) g = genome.elite;
+    }
+    Genome bestCopy = g.deepCopy();
+    bestCopy.setFitness(g.getFitness());
     synchronized (tribeData)
     {
-      g.drawImage(tribeData.bestImage);
+      tribeData.bestGenome = bestCopy;
       for (int i = 0; i < Math.min(maximumPopulation, population.size()); i++)
       {
         tribeData.fitness[i] = population.get(i).fitness;
       }
+      tribeData.fitness[0] = g.getFitness();
       tribeData.generations = generations;
       tribeData.improvements = improvements;
       tribeData.populationSize = population.size();
       tribeData.averageHammDist = findAverageHammingDistance();
       tribeData.crossovers = crossovers;
+      tribeData.restarts = restarts;
     }
   }
 
   /**
-   * Find double value of the average hamming distance
+   * Find double value of the average hamming distance, over every pair of
+   * genomes or a random sample of Constants.HAMMING_SAMPLE_PAIRS pairs
    * 
    * @return avg hamm dist
    */
   private double findAverageHammingDistance()
   {
-    double distance = 0;
     int size = population.size();
-    for (int i = 0; i < size; i++)
+    if (size < 2) return 0;
+    double distance = 0;
+    int pairs = 0;
+    if (size * (size - 1) / 2 <= Constants.HAMMING_SAMPLE_PAIRS)
+    {
+      for (int i = 0; i < size; i++)
+      {
+        for (int j = i + 1; j < size; j++)
+        {
+          distance += population.get(i).hammingDistance(population.get(j));
+          pairs++;
+        }
+      }
+    }
+    else
     {
-      for (int j = 0; j < size; j++)
+      for (; pairs < Constants.HAMMING_SAMPLE_PAIRS; pairs++)
       {
-        if (i == j) continue;
+        int i = Constants.RANDOM.nextInt(size);
+        // Any other member, so a genome is never compared with itself
+        int j = (i + 1 + Constants.RANDOM.nextInt(size - 1)) % size;
         distance += population.get(i).hammingDistance(population.get(j));
       }
     }
-    return distance / (size * size);
+    return distance / pairs;
   }
 
   /**
@@ -251,19 +605,33 @@ public class Tribe implements Runnable
           }
         }
 
-        if (timeToBreed)
-        {
-          breedGenomes();
-          naturalSelection();
-        }
-        else if (!genomesToClimb.isEmpty())
+        synchronized (stepLock)
         {
-          climbGenes();
-        }
-        else
-        {
-          updateTribeData();
-          genomesToClimb.addAll(population);
+          long before = fitCalc.getThreadEvaluations();
+          if (timeToBreed)
+          {
+            breedGenomes();
+            naturalSelection();
+          }
+          else if (evolutionMode == EvolutionMode.STEADY_STATE)
+          {
+            steadyStateStep();
+            growIfDue();
+            if (generations % (Constants.OFFSPRING_BATCH_SIZE * 10) == 0)
+            {
+              updateTribeData();
+            }
+          }
+          else if (!genomesToClimb.isEmpty())
+          {
+            climbGenes();
+          }
+          else
+          {
+            updateTribeData();
+            genomesToClimb.addAll(population);
+          }
+          evaluations += fitCalc.getThreadEvaluations() - before;
         }
 
         if (Thread.interrupted())
@@ -308,6 +676,17 @@ public class Tribe implements Runnable
     // System.out.println(population.size());
     Genome g = genomesToClimb.get(climbIndex);
     // System.out.println("climbing " + g);
+    if (Constants.RECYCLE_INTERVAL > 0 && generations - lastRecycle >= Constants.RECYCLE_INTERVAL)
+    {
+      lastRecycle = generations;
+      if (recycler.recycle(g) > 0)
+      {
+        genomesToClimb.remove(climbIndex);
+        improvements++;
+        return;
+      }
+    }
+    growIfDue();
     for (int i = 0; i < 20; i++)
     {
       generations++;
@@ -332,6 +711,114 @@ public class Tribe implements Runnable
     }
   }
 
+  /**
+   * Check for growth once every Constants.GROWTH_WINDOW generations if the
+   * genomes may grow
+   */
+  private void growIfDue()
+  {
+    if (maximumTriangles > triangleCount && generations - lastGrowthCheck >= Constants.GROWTH_WINDOW)
+    {
+      lastGrowthCheck = generations;
+      growIfStalled();
+    }
+  }
+
+  /**
+   * Add Constants.GROWTH_STEP triangles to every genome when the best genome
+   * gained less than Constants.GROWTH_MIN_GAIN of its fitness since the last
+   * check, until the genomes reach the maximum number of triangles
+   */
+  private void growIfStalled()
+  {
+    long best = Collections.min(population).getFitness();
+    boolean stalled = windowFitness != -1 && windowFitness - best < windowFitness * Constants.GROWTH_MIN_GAIN;
+    windowFitness = best;
+    if (!stalled) return;
+    for (Genome g : population)
+    {
+      int missing = maximumTriangles - g.getTriangles().size();
+      if (missing > 0) recycler.grow(g, Math.min(Constants.GROWTH_STEP, missing));
+    }
+    windowFitness = Collections.min(population).getFitness();
+  }
+
+  /**
+   * Breed one batch of offspring from tournament selected parents, evaluate the
+   * batch in parallel and keep the fittest of the population and offspring
+   */
+  private void steadyStateStep()
+  {
+    List<Genome> offspring = new ArrayList<>(Constants.OFFSPRING_BATCH_SIZE);
+    while (offspring.size() < Constants.OFFSPRING_BATCH_SIZE)
+    {
+      Genome p1 = tournamentSelect();
+      Genome p2 = tournamentSelect();
+      Pair<Genome> children = null;
+
+      if (Constants.RANDOM.nextInt(2) == 1)
+      {
+        int crossOverGene = CrossOver.findCrossOverGene(p1, p2);
+        if (crossOverGene != -1)
+        {
+          children = CrossOver.singlePoint(p1, p2, crossOverGene);
+        }
+      }
+      if (children == null)
+      {
+        children = CrossOver.uniform(p1, p2);
+      }
+      offspringMutator.perturbGenome(children.first, Constants.OFFSPRING_MUTATIONS);
+      offspringMutator.perturbGenome(children.second, Constants.OFFSPRING_MUTATIONS);
+      offspring.add(children.first);
+      offspring.add(children.second);
+      crossovers++;
+    }
+
+    fitCalc.evaluateAll(offspring);
+    generations += offspring.size();
+
+    // Replace the worst genomes with any fitter offspring
+    Collections.sort(population);
+    for (Genome child : offspring)
+    {
+      int last = population.size() - 1;
+      if (population.size() < maximumPopulation)
+      {
+        population.add(child);
+      }
+      else if (child.fitness < population.get(last).fitness)
+      {
+        population.set(last, child);
+      }
+      else
+      {
+        continue;
+      }
+      improvements++;
+      Collections.sort(population);
+    }
+  }
+
+  /**
+   * Select the fittest of a few random genomes
+   * 
+   * @return tournament winner
+   */
+  private Genome tournamentSelect()
+  {
+    Genome best = null;
+    for (int i = 0; i < Constants.TOURNAMENT_SIZE; i++)
+    {
+      Genome g = population.get(Constants.RANDOM.nextInt(population.size()));
+      if (best == null || g.fitness < best.fitness)
+      {
+        best = g;
+      }
+    }
+    return best;
+  }
+
   /**
    * Get breeders to use
    * 
@@ -427,11 +914,17 @@ public class Tribe implements Runnable
       crossovers++;
     }
 
+    List<Genome> childGenomes = new ArrayList<>(children.size() * 2);
+    for (Pair<Genome> childs : children)
+    {
+      childGenomes.add(childs.first);
+      childGenomes.add(childs.second);
+    }
+    fitCalc.evaluateAll(childGenomes);
+
     for (Pair<Genome> childs : children)
     {
-      childs.first.setFitness(fitCalc.findFitness(childs.first));
       if (Constants.DEBUG_BREEDING) System.out.println("Fitness child: " + childs.first.getFitness());
-      childs.second.setFitness(fitCalc.findFitness(childs.second));
       if (Constants.DEBUG_BREEDING) System.out.println("Fitness child: " + childs.second.getFitness());
       addIfDiverse(childs.first);
       addIfDiverse(childs.second);
@@ -458,7 +951,7 @@ public class Tribe implements Runnable
     for (int i = 0; i < population.size(); i++)
     {
       Genome g = population.get(i);
-      if (child.hammingDistance(g) < Constants.DIVERSITY_METRIC)
+      if (child.hammingDistance(g) < child.getGeneCount() * Constants.DIVERSITY_SHARE)
       {
         if (child.fitness < g.fitness)
         {
@@ -1,7 +1,5 @@
 package trianglegenome;
 
-import java.awt.image.BufferedImage;
-
 /**
  * Class which keeps track of data for each tribe, message passing from tribe to
  * trianglegenome
@@ -11,24 +9,23 @@ import java.awt.image.BufferedImage;
  */
 public class TribeData
 {
-  public BufferedImage bestImage;
-  public int bestImageIndex;
+  public Genome bestGenome;
   public int improvements;
   public int generations;
   public int crossovers;
   public long[] fitness;
   public int populationSize;
   public double averageHammDist;
+  public int restarts;
 
   /**
-   * Create a new tribe data object
+   * Create a new tribe data object, the best genome is only drawn when an image
+   * is needed
    * 
-   * @param width width of target
-   * @param height height of target
+   * @param maximumPopulation maximum population of the tribe
    */
-  public TribeData(int width, int height, int maximumPopulation)
+  public TribeData(int maximumPopulation)
   {
-    bestImage = new BufferedImage(width, height, Constants.BUF_IMG_TYPE);
     improvements = 0;
     generations = 0;
     fitness = new long[maximumPopulation];
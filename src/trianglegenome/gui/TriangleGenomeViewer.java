@@ -65,7 +65,11 @@ import trianglegenome.Constants;
 import trianglegenome.Genome;
 import trianglegenome.Triangle;
 import trianglegenome.TriangleGenome;
+import trianglegenome.TriangleGenome.RunMode;
 import trianglegenome.TriangleGenomeData;
+import trianglegenome.Tribe.EvolutionMode;
+import trianglegenome.util.MutatorType;
+import trianglegenome.util.SeedingStrategy;
 import trianglegenome.util.StopWatch;
 
 /**
@@ -116,8 +120,13 @@ public class TriangleGenomeViewer
   private JLabel deltaFitLabel;
   private JLabel diversityLabel;
   private JLabel improvementsLabel;
+  private JLabel skipsLabel;
+  private JLabel screenedLabel;
+  private JLabel resolutionLabel;
+  private JLabel restartsLabel;
+  private JLabel raceLabel;
 
-  private long lastBestFitness;
+  private double lastBestFitness;
   private int nextMinute;
   private float deltaFitness;
 
@@ -141,12 +150,24 @@ public class TriangleGenomeViewer
   private boolean paused = true;
   private int tribeIndex = 0;
   private int genomeIndex = 0;
-  private int triangleCount = Constants.TRIANGLE_COUNT;
+  private int triangleCount = Constants.DEFAULT_TRIANGLE_COUNT;
+  private int genomeTriangles = Constants.DEFAULT_TRIANGLE_COUNT;
+  private boolean growTriangles = false;
+  private SeedingStrategy seeding = SeedingStrategy.RANDOM;
   private int tribeCount = Runtime.getRuntime().availableProcessors();
+  private EvolutionMode evolutionMode = EvolutionMode.HILL_CLIMBING;
+  private MutatorType mutatorType = MutatorType.ADAPTIVE;
+  private RunMode runMode = RunMode.INDEPENDENT;
 
   private JTextField initialPopulationText;
   private JTextField maximumPopulationText;
   private JTextField tribeCountText;
+  private JTextField genomeTrianglesText;
+  private JComboBox<String> evolutionModeComboBox;
+  private JComboBox<String> mutatorTypeComboBox;
+  private JComboBox<String> runModeComboBox;
+  private JComboBox<String> triangleModeComboBox;
+  private JComboBox<String> seedingComboBox;
 
   /**
    * Main logic for creating the GUI is in this constructor
@@ -190,8 +211,7 @@ public class TriangleGenomeViewer
     genomePanelContainer.add(genomePanel, BorderLayout.CENTER);
 
     // Initialize triangle slider to max
-    triangleSlider = new JSlider(JSlider.HORIZONTAL, 0, Constants.TRIANGLE_COUNT,
-        Constants.TRIANGLE_COUNT);
+    triangleSlider = new JSlider(JSlider.HORIZONTAL, 0, genomeTriangles, genomeTriangles);
     triangleSlider.setSnapToTicks(true);
     triangleSlider.addChangeListener(event -> triangleSliderChange(event));
     pauseOnlyComponents.add(triangleSlider);
@@ -240,8 +260,8 @@ public class TriangleGenomeViewer
     // Triangle slider and display
     JPanel triangleSliderContainer = new JPanel();
     triangleValue = new JLabel("Triangle #");
-    triangleCountField = new JTextField(Integer.toString(Constants.TRIANGLE_COUNT).length());
-    triangleCountField.setText(Constants.TRIANGLE_COUNT + "");
+    triangleCountField = new JTextField(Integer.toString(Constants.MAXIMUM_TRIANGLE_COUNT).length());
+    triangleCountField.setText(genomeTriangles + "");
     triangleCountField.addActionListener(e -> triangleFieldAction(e));
     pauseOnlyComponents.add(triangleCountField);
     startedOnlyComponents.add(triangleCountField);
@@ -369,20 +389,40 @@ public class TriangleGenomeViewer
     try
     {
       Integer integerValue = Integer.valueOf(maximumPopulationText.getText());
-      if (integerValue > 200 || integerValue <= 0)
+      if (integerValue > 1000 || integerValue <= 0)
       {
         maximumPopulationText.setText(Integer.toString(maximumPopulation));
-        JOptionPane.showMessageDialog(settingsFrame, " the value should be in the range of 1 to 200");
+        JOptionPane.showMessageDialog(settingsFrame, " the value should be in the range of 1 to 1000");
       }
     }
     catch (NumberFormatException e1)
     {
       maximumPopulationText.setText(Integer.toString(maximumPopulation));
-      JOptionPane.showMessageDialog(settingsFrame, " The value should be a number 1 to 200");
+      JOptionPane.showMessageDialog(settingsFrame, " The value should be a number 1 to 1000");
     }
 
   }
 
+  /**
+   * Suggest a matching maximum population when the evolution mode changes
+   * 
+   * @param e
+   */
+  private void evolutionModeComboBoxChange(ItemEvent e)
+  {
+    if (e.getStateChange() == ItemEvent.SELECTED)
+    {
+      if (evolutionModeComboBox.getSelectedIndex() == EvolutionMode.STEADY_STATE.ordinal())
+      {
+        maximumPopulationText.setText(Integer.toString(Constants.DEFAULT_STEADY_STATE_POPULATION));
+      }
+      else
+      {
+        maximumPopulationText.setText(Integer.toString(Constants.DEFAULT_MAXIMUM_POPULATION));
+      }
+    }
+  }
+
   private void initialPopulationTextAction(ActionEvent e)
   {
     try
@@ -421,17 +461,26 @@ public class TriangleGenomeViewer
         elapsedTimeLabel.setText(stopWatch.getMinSecString());
         genPerSecLabel.setText(String.format("%.1f",
             ((float) totalGenerations) / ((float) stopWatch.getSeconds())));
-        diversityLabel.setText(String.format("%.2f", 100 * triangleGenomeData.averageHammDist
-            / ((float) Constants.GENE_COUNT)) + " %");
-        deltaFitness = (float) ((triangleGenomeData.fitness - lastBestFitness)
-            / (totalPixelCount));
+        if (triangleGenomeData.bestGenomeCopy != null)
+        {
+          diversityLabel.setText(String.format("%.2f", 100 * triangleGenomeData.averageHammDist
+              / ((float) triangleGenomeData.bestGenomeCopy.getGeneCount())) + " %");
+        }
+        skipsLabel.setText(String.format("%.1f", triangleGenomeData.skippedEvaluations
+            / (double) Math.max(triangleGenomeData.improvements, 1)));
+        screenedLabel.setText(triangleGenomeData.screenedEvaluations + " (" + triangleGenomeData.falseRejections
+            + " false of " + triangleGenomeData.auditedRejections + " checked)");
+        resolutionLabel.setText(triangleGenomeData.scaledWidth + " x " + triangleGenomeData.scaledHeight);
+        restartsLabel.setText(Integer.toString(triangleGenomeData.restarts));
+        raceLabel.setText(triangleGenomeData.race);
+        deltaFitness = (float) (triangleGenomeData.fitness / getScaledPixelCount() - lastBestFitness);
       }
       deltaFitLabel.setText(String.format("%.6f", deltaFitness));
     }
     if (stopWatch.getMinutes() >= nextMinute)
     {
       nextMinute++;
-      lastBestFitness = triangleGenomeData.fitness;
+      lastBestFitness = triangleGenomeData.fitness / getScaledPixelCount();
     }
   }
 
@@ -509,6 +558,41 @@ public class TriangleGenomeViewer
       statContent.add(div);
       statContent.add(diversityLabel);
 
+      JLabel skips = new JLabel("Evaluations saved / improvement:");
+      skipsLabel = new JLabel("0.0");
+      skips.setBorder(labelPadding);
+      skipsLabel.setBorder(labelPadding);
+      statContent.add(skips);
+      statContent.add(skipsLabel);
+
+      JLabel screened = new JLabel("Evaluations screened out:");
+      screenedLabel = new JLabel("0 (0 false of 0 checked)");
+      screened.setBorder(labelPadding);
+      screenedLabel.setBorder(labelPadding);
+      statContent.add(screened);
+      statContent.add(screenedLabel);
+
+      JLabel resolution = new JLabel("Resolution:");
+      resolutionLabel = new JLabel("?");
+      resolution.setBorder(labelPadding);
+      resolutionLabel.setBorder(labelPadding);
+      statContent.add(resolution);
+      statContent.add(resolutionLabel);
+
+      JLabel restarts = new JLabel("Tribe restarts:");
+      restartsLabel = new JLabel("0");
+      restarts.setBorder(labelPadding);
+      restartsLabel.setBorder(labelPadding);
+      statContent.add(restarts);
+      statContent.add(restartsLabel);
+
+      JLabel race = new JLabel("Race:");
+      raceLabel = new JLabel("-");
+      race.setBorder(labelPadding);
+      raceLabel.setBorder(labelPadding);
+      statContent.add(race);
+      statContent.add(raceLabel);
+
       statisticsFrame.getContentPane().add(statContent);
       statisticsFrame.pack();
     }
@@ -532,7 +616,7 @@ public class TriangleGenomeViewer
   {
     if (lastBestFitness == -1)
     {
-      lastBestFitness = triangleGenome.getBestGenomeFitness();
+      lastBestFitness = triangleGenome.getBestGenomeFitness() / getScaledPixelCount();
     }
     triangleGenome.drawBestGenomeImage(genomePanel.getImage());
     genomePanel.repaint();
@@ -621,7 +705,6 @@ public class TriangleGenomeViewer
       {
         comp.setEnabled(true);
       }
-      triangleCount = Constants.TRIANGLE_COUNT;
       updateGenomeSlider();
       updateGenomePanel();
       stopWatch.pause();
@@ -635,7 +718,8 @@ public class TriangleGenomeViewer
         triangleGenomeData = new TriangleGenomeData(tribeCount, targetImagePanel.getWidth(),
             targetImagePanel.getHeight());
         triangleGenome = new TriangleGenome(targetImagePanel.getImage(), tribeCount, triangleGenomeData,
-            initialPopulation, maximumPopulation);
+            initialPopulation, maximumPopulation, evolutionMode, mutatorType, runMode, genomeTriangles,
+            growTriangles, seeding);
         triangleGenomeThread = new Thread(triangleGenome);
         triangleGenomeThread.start();
       }
@@ -649,7 +733,7 @@ public class TriangleGenomeViewer
         comp.setEnabled(false);
       }
       statisticsButton.setEnabled(true);
-      triangleSlider.setValue(Constants.TRIANGLE_COUNT);
+      triangleSlider.setValue(triangleSlider.getMaximum());
     }
   }
 
@@ -695,7 +779,7 @@ public class TriangleGenomeViewer
             Constants.BUF_IMG_TYPE);
         byteImage.getGraphics().drawImage(image, 0, 0, null);
         targetImagePanel.setImage(byteImage);
-        triangleSlider.setValue(Constants.TRIANGLE_COUNT);
+        triangleSlider.setValue(triangleSlider.getMaximum());
         resetTriangleGenome();
         content.repaint();
       }
@@ -915,7 +999,7 @@ public class TriangleGenomeViewer
 
         try
         {
-          Genome genomeToWrite = triangleGenome.getTribe(tribeIndex).getGenome(genomeIndex);
+          Genome genomeToWrite = getSelectedGenome();
           if (!(chooser.getFileFilter().equals(filterTxt) | chooser.getFileFilter().equals(filterTxt)))
           {
             chooser.setFileFilter(filterXML);
@@ -1077,11 +1161,10 @@ public class TriangleGenomeViewer
     String[] columnNames =
     { "Triangle", "X1", "Y1", "X2", "Y2", "X3", "Y3", "Red", "Blue", "Green", "Alpha" };
 
-    Object[][] dataMy = new Object[200][11];
-    List<Triangle> listOftrianglesTemp = triangleGenome.getTribe(tribeIndex).getGenome(genomeIndex)
-        .getTriangles();
+    List<Triangle> listOftrianglesTemp = getSelectedGenome().getTriangles();
+    Object[][] dataMy = new Object[listOftrianglesTemp.size()][11];
     List<Integer> listOfTriangleValues = new ArrayList<>();
-    for (int i = 0; i < 200; i++)
+    for (int i = 0; i < listOftrianglesTemp.size(); i++)
     {
       if (i != 0)
       {
@@ -1133,6 +1216,10 @@ public class TriangleGenomeViewer
     if (paused && triangleGenome != null && triangleGenome.getTribe(tribeIndex) != null)
     {
       genomeSlider.setMaximum(triangleGenome.getTribe(tribeIndex).getPopulationSize() - 1);
+      // Genomes may have grown since the slider was set
+      int triangles = triangleGenome.getTribe(tribeIndex).getGenome(genomeIndex).getTriangles().size();
+      triangleSlider.setMaximum(triangles);
+      triangleSlider.setValue(triangles);
     }
   }
 
@@ -1163,6 +1250,38 @@ public class TriangleGenomeViewer
     updateGenomePanel();
   }
 
+  /**
+   * Get the genome picked by the sliders at the size of the target, a run at a
+   * lower resolution has it scaled up and scored again
+   * 
+   * @return selected genome
+   */
+  private Genome getSelectedGenome()
+  {
+    Genome g = triangleGenome.getTribe(tribeIndex).getGenome(genomeIndex);
+    int width = targetImagePanel.getWidth();
+    int height = targetImagePanel.getHeight();
+    if (g.getWidth() == width && g.getHeight() == height) return g;
+    Genome copy = g.scaledCopy(width, height);
+    copy.setFitness(triangleGenome.findFullFitness(copy));
+    return copy;
+  }
+
+  /**
+   * Get the number of pixels the tribes score genomes on, fewer than the
+   * target has while a progressive run works at a lower resolution
+   * 
+   * @return pixel count of the scaled target
+   */
+  private double getScaledPixelCount()
+  {
+    synchronized (triangleGenomeData)
+    {
+      if (triangleGenomeData.scaledWidth == 0) return totalPixelCount;
+      return (double) triangleGenomeData.scaledWidth * triangleGenomeData.scaledHeight;
+    }
+  }
+
   /**
    * Grab data from tribe and draw onto genome panel, should only be used when
    * paused
@@ -1171,7 +1290,7 @@ public class TriangleGenomeViewer
   {
     if (triangleGenome != null && triangleGenome.getTribe(tribeIndex) != null)
     {
-      Genome g = triangleGenome.getTribe(tribeIndex).getGenome(genomeIndex);
+      Genome g = getSelectedGenome();
       g.drawImage(genomePanel.getImage(), triangleCount);
       genomePanel.repaint();
       updateFitnessLabel(g.fitness);
@@ -1190,8 +1309,8 @@ public class TriangleGenomeViewer
     }
     else
     {
-      // Normalize fitness
-      double fitness = triangleGenome.getBestGenomeFitness() / totalPixelCount;
+      // Normalize fitness by the pixels it was measured on
+      double fitness = triangleGenome.getBestGenomeFitness() / getScaledPixelCount();
       fitnessLabel.setText("Fitness: " + String.format("%6f", fitness));
     }
   }
@@ -1276,7 +1395,7 @@ public class TriangleGenomeViewer
     try
     {
       int triangleNo = Integer.parseInt(triangleCountField.getText());
-      if (triangleNo >= 0 && triangleNo < Constants.TRIANGLE_COUNT)
+      if (triangleNo >= 0 && triangleNo < triangleSlider.getMaximum())
       {
         triangleSlider.setValue(triangleNo);
       }
@@ -1286,7 +1405,7 @@ public class TriangleGenomeViewer
       }
       else
       {
-        triangleSlider.setValue(Constants.TRIANGLE_COUNT - 1);
+        triangleSlider.setValue(triangleSlider.getMaximum() - 1);
       }
     }
     catch (NumberFormatException e1)
@@ -1322,12 +1441,53 @@ public class TriangleGenomeViewer
       initialPopulationText.setText(Integer.toString(initialPopulation));
       initialPopulationText.addActionListener(e -> initialPopulationTextAction(e));
 
-      JLabel labelForMaximumPopulation = new JLabel("Maximum Population (1-200)");
+      JLabel labelForMaximumPopulation = new JLabel("Maximum Population (1-1000)");
       labelForMaximumPopulation.setBorder(smallBorder);
       maximumPopulationText = new JTextField(4);
       maximumPopulationText.setText(Integer.toString(maximumPopulation));
       maximumPopulationText.addActionListener(e -> maximumPopulationTextAction(e));
 
+      JLabel labelForGenomeTriangles = new JLabel("Triangles (4-" + Constants.MAXIMUM_TRIANGLE_COUNT + ")");
+      labelForGenomeTriangles.setBorder(smallBorder);
+      genomeTrianglesText = new JTextField(4);
+      genomeTrianglesText.setText(Integer.toString(genomeTriangles));
+
+      JLabel labelForTriangleMode = new JLabel("Triangle Count");
+      labelForTriangleMode.setBorder(smallBorder);
+      String[] triangleModes =
+      { "Fixed", "Grow When Stalled" };
+      triangleModeComboBox = new JComboBox<String>(triangleModes);
+      triangleModeComboBox.setSelectedIndex(growTriangles ? 1 : 0);
+
+      JLabel labelForSeeding = new JLabel("Seeding");
+      labelForSeeding.setBorder(smallBorder);
+      String[] seedings =
+      { "Random", "Delaunay" };
+      seedingComboBox = new JComboBox<String>(seedings);
+      seedingComboBox.setSelectedIndex(seeding.ordinal());
+
+      JLabel labelForEvolutionMode = new JLabel("Evolution Mode");
+      labelForEvolutionMode.setBorder(smallBorder);
+      String[] modes =
+      { "Hill Climbing", "Steady State" };
+      evolutionModeComboBox = new JComboBox<String>(modes);
+      evolutionModeComboBox.setSelectedIndex(evolutionMode.ordinal());
+      evolutionModeComboBox.addItemListener(e -> evolutionModeComboBoxChange(e));
+
+      JLabel labelForMutatorType = new JLabel("Mutator");
+      labelForMutatorType.setBorder(smallBorder);
+      String[] mutators =
+      { "Hill Climbing", "Random", "Optimal Color", "Annealing", "Evolution Strategy", "SPSA", "Line Search", "Compound", "Z-Order", "Partitioned", "Adaptive" };
+      mutatorTypeComboBox = new JComboBox<String>(mutators);
+      mutatorTypeComboBox.setSelectedIndex(mutatorType.ordinal());
+
+      JLabel labelForRunMode = new JLabel("Run Mode");
+      labelForRunMode.setBorder(smallBorder);
+      String[] runModes =
+      { "Independent Tribes", "Parallel Tempering", "Progressive Resolution", "Racing" };
+      runModeComboBox = new JComboBox<String>(runModes);
+      runModeComboBox.setSelectedIndex(runMode.ordinal());
+
       Container content = settingsFrame.getContentPane();
       content.setLayout(new BoxLayout(content, BoxLayout.PAGE_AXIS));
 
@@ -1343,6 +1503,24 @@ public class TriangleGenomeViewer
       settingsValues.add(labelForMaximumPopulation);
       settingsValues.add(maximumPopulationText);
 
+      settingsValues.add(labelForGenomeTriangles);
+      settingsValues.add(genomeTrianglesText);
+
+      settingsValues.add(labelForTriangleMode);
+      settingsValues.add(triangleModeComboBox);
+
+      settingsValues.add(labelForSeeding);
+      settingsValues.add(seedingComboBox);
+
+      settingsValues.add(labelForEvolutionMode);
+      settingsValues.add(evolutionModeComboBox);
+
+      settingsValues.add(labelForMutatorType);
+      settingsValues.add(mutatorTypeComboBox);
+
+      settingsValues.add(labelForRunMode);
+      settingsValues.add(runModeComboBox);
+
       content.add(settingsValues);
 
       JPanel buttonSettings = new JPanel();
@@ -1425,6 +1603,7 @@ public class TriangleGenomeViewer
       int tribeCountSet = Integer.parseInt(tribeCountText.getText());
       int initPopSet = Integer.parseInt(initialPopulationText.getText());
       int maxPopSet = Integer.parseInt(maximumPopulationText.getText());
+      int trianglesSet = Integer.parseInt(genomeTrianglesText.getText());
       if (tribeCountSet <= 0 || tribeCountSet > 1000)
       {
         return false;
@@ -1433,7 +1612,11 @@ public class TriangleGenomeViewer
       {
         return false;
       }
-      else if (maxPopSet <= 0 || maxPopSet > 200)
+      else if (maxPopSet <= 0 || maxPopSet > 1000)
+      {
+        return false;
+      }
+      else if (trianglesSet < 4 || trianglesSet > Constants.MAXIMUM_TRIANGLE_COUNT)
       {
         return false;
       }
@@ -1442,6 +1625,14 @@ public class TriangleGenomeViewer
         tribeCount = tribeCountSet;
         initialPopulation = initPopSet;
         maximumPopulation = maxPopSet;
+        genomeTriangles = trianglesSet;
+        growTriangles = triangleModeComboBox.getSelectedIndex() == 1;
+        seeding = SeedingStrategy.values()[seedingComboBox.getSelectedIndex()];
+        triangleSlider.setMaximum(genomeTriangles);
+        triangleSlider.setValue(genomeTriangles);
+        evolutionMode = EvolutionMode.values()[evolutionModeComboBox.getSelectedIndex()];
+        mutatorType = MutatorType.values()[mutatorTypeComboBox.getSelectedIndex()];
+        runMode = RunMode.values()[runModeComboBox.getSelectedIndex()];
         resetTriangleGenome();
         return true;
       }
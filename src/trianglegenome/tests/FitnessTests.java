@@ -1,14 +1,35 @@
 package trianglegenome.tests;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 
 import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+import trianglegenome.util.AnnealingMutator;
+import trianglegenome.util.CompoundMutator;
+import trianglegenome.util.DelaunaySeeder;
+import trianglegenome.util.ErrorMap;
+import trianglegenome.util.EvolutionStrategyMutator;
 import trianglegenome.util.Fitness;
 import trianglegenome.util.Fitness.FitnessType;
+import trianglegenome.util.HillClimbingRectMutator;
+import trianglegenome.util.LineSearch;
+import trianglegenome.util.MutationJournal;
+import trianglegenome.util.OptimalColorMutator;
+import trianglegenome.util.PartitionedMutator;
+import trianglegenome.util.RandomMutator;
+import trianglegenome.util.Target;
+import trianglegenome.util.TriangleRecycler;
+import trianglegenome.util.UniformGeneSelector;
 
 public class FitnessTests
 {
@@ -43,7 +64,7 @@ public class FitnessTests
         .getResource(
             "testfiles/redpixel.png")));
 
-    Fitness fitCalc = new Fitness(targetImage, imageBuf, FitnessType.MANHATTAN);
+    Fitness fitCalc = new Fitness(targetImage, FitnessType.MANHATTAN);
 
     assert fitCalc.manhattanDistance(imageBuf) == 512;
     assert fitCalc.distanceSquared(imageBuf) == 130052;
@@ -55,10 +76,273 @@ public class FitnessTests
         .getResource(
             "testfiles/mona-lisa-face-redPixel-200x200.png")));
 
-    fitCalc = new Fitness(targetImage, imageBuf, FitnessType.MANHATTAN);
+    fitCalc = new Fitness(targetImage, FitnessType.MANHATTAN);
 
     assert fitCalc.manhattanDistance(imageBuf) == 218;
 
     assert fitCalc.distanceSquared(imageBuf) == 22246;
+
+    // Summed area tables match a direct sum
+    Target target = new Target(targetImage);
+    long sum = 0;
+    for (int i = 10; i < 30; i++)
+    {
+      for (int j = 5; j < 12; j++)
+      {
+        sum += targetImage.getRaster().getSample(i, j, 0);
+      }
+    }
+    assert target.rectSum(10, 5, 20, 7, 2) == sum;
+
+    // Genomes are drawn exactly like Graphics.fillPolygon draws them
+    for (int i = 0; i < 20; i++)
+    {
+      Genome g = Genome.randomGenome(targetImage);
+      BufferedImage drawn = new BufferedImage(targetImage.getWidth(), targetImage.getHeight(), Constants.BUF_IMG_TYPE);
+      g.drawImage(drawn);
+      BufferedImage filled = new BufferedImage(targetImage.getWidth(), targetImage.getHeight(),
+          Constants.BUF_IMG_TYPE);
+      Graphics2D g2D = filled.createGraphics();
+      g2D.setBackground(Color.white);
+      g2D.clearRect(0, 0, filled.getWidth(), filled.getHeight());
+      for (Triangle triangle : g.getTriangles())
+      {
+        triangle.drawTriangle(g2D);
+      }
+      assert Arrays.equals(((DataBufferByte) drawn.getRaster().getDataBuffer()).getData(),
+          ((DataBufferByte) filled.getRaster().getDataBuffer()).getData());
+    }
+
+    // Batch evaluation matches single evaluation
+    fitCalc = new Fitness(targetImage, FitnessType.DISTANCE_SQUARED);
+    List<Genome> genomes = new ArrayList<>();
+    for (int i = 0; i < 8; i++)
+    {
+      genomes.add(Genome.randomGenome(targetImage));
+    }
+    fitCalc.evaluateAll(genomes);
+    for (Genome g : genomes)
+    {
+      assert g.getFitness() == fitCalc.findFitness(g);
+    }
+
+    // Region climbing keeps the full fitness exact
+    Genome climber = genomes.get(0);
+    HillClimbingRectMutator rectMutator = new HillClimbingRectMutator(fitCalc);
+    for (int i = 0; i < 500; i++)
+    {
+      rectMutator.mutateGenome(climber);
+    }
+    assert climber.getFitness() == fitCalc.findFitness(climber);
+
+    // Rejected full evaluations leave no known tile with the error of the move
+    Genome wanderer = genomes.get(3);
+    RandomMutator randomMutator = new RandomMutator(fitCalc, targetImage.getWidth(), targetImage.getHeight());
+    for (int i = 0; i < 300; i++)
+    {
+      randomMutator.mutateGenome(wanderer);
+    }
+    Genome fresh = wanderer.deepCopy();
+    fitCalc.findFitness(fresh);
+    ErrorMap map = wanderer.errorMap;
+    int tile = map.getTileSize();
+    for (int row = 0; row < map.getRows(); row++)
+    {
+      for (int column = 0; column < map.getColumns(); column++)
+      {
+        if (!map.isKnown(new int[] { column * tile, row * tile, 1, 1 })) continue;
+        assert map.getTileError(column, row) == fresh.errorMap.getTileError(column, row);
+      }
+    }
+
+    // Optimal color jumps never make a genome worse
+    OptimalColorMutator colorMutator = new OptimalColorMutator(fitCalc, rectMutator, 1);
+    long before = climber.getFitness();
+    for (int i = 0; i < 50; i++)
+    {
+      colorMutator.mutateGenome(climber);
+    }
+    assert climber.getFitness() <= before;
+    assert climber.getFitness() == fitCalc.findFitness(climber);
+
+    // Offspring scored on other threads keep the fitness exact
+    EvolutionStrategyMutator esMutator = new EvolutionStrategyMutator(fitCalc, new UniformGeneSelector());
+    before = climber.getFitness();
+    for (int i = 0; i < 50; i++)
+    {
+      esMutator.mutateGenome(climber);
+    }
+    assert climber.getFitness() <= before;
+    assert climber.getFitness() == fitCalc.findFitness(climber);
+
+    // A rolled back transaction leaves no trace
+    Genome copy = climber.deepCopy();
+    MutationJournal journal = climber.journal;
+    journal.begin();
+    journal.translate(3, 7, -5);
+    journal.moveVertex(3, 1, 20, 20);
+    journal.swap(3, 4);
+    journal.recolor(4, 30, -30, 10);
+    climber.fitness = 0;
+    journal.rollback();
+    assert climber.equals(copy);
+    assert climber.getFitness() == fitCalc.findFitness(climber);
+
+    CompoundMutator compoundMutator = new CompoundMutator(fitCalc, new UniformGeneSelector());
+    for (int i = 0; i < 200; i++)
+    {
+      compoundMutator.mutateGenome(climber);
+    }
+    assert climber.getFitness() == fitCalc.findFitness(climber);
+
+    // Groups climbed on other threads merge into an exact fitness
+    Genome partitioned = genomes.get(5);
+    PartitionedMutator partitionedMutator = new PartitionedMutator(fitCalc, new UniformGeneSelector());
+    before = partitioned.getFitness();
+    for (int i = 0; i < 300; i++)
+    {
+      partitionedMutator.mutateGenome(partitioned);
+    }
+    assert partitioned.getFitness() <= before;
+    assert partitioned.getFitness() == fitCalc.findFitness(partitioned);
+
+    // Gain bounds from the error map never fall below the real gain
+    for (int i = 0; i < 200; i++)
+    {
+      int gene = Constants.RANDOM.nextInt(climber.getTriangles().size() * 10);
+      int delta = Constants.RANDOM.nextBoolean() ? 1 : -1;
+      if (!climber.canChange(gene, delta)) continue;
+      int[] rect = climber.getGeneChangeRect(gene, delta);
+      long bound = fitCalc.gainBound(climber, rect, Fitness.pixelChange(climber, gene, delta));
+      long fitness = fitCalc.findRectFitness(climber, rect);
+      climber.changeGene(gene, delta);
+      assert fitness - fitCalc.findRectFitness(climber, rect) <= bound;
+      climber.changeGene(gene, -delta);
+    }
+    climber.changed(0, climber.getGeneBoundingRect(0));
+    assert fitCalc.gainBound(climber, climber.getGeneBoundingRect(0), 1) == Long.MAX_VALUE;
+
+    // A transparent triangle is dead and recycling keeps the fitness exact
+    climber.setGene(5 * 10 + 9, 0);
+    climber.setFitness(fitCalc.findFitness(climber));
+    assert TriangleRecycler.visiblePixels(climber)[5] == 0;
+    before = climber.getFitness();
+    new TriangleRecycler(fitCalc).recycle(climber);
+    assert climber.getFitness() <= before;
+    assert climber.getFitness() == fitCalc.findFitness(climber);
+
+    // A small genome grows and keeps its fitness exact
+    Genome small = Genome.randomGenomeFixedAlpha(targetImage, Constants.RANDOM, 80, 20);
+    assert small.getGeneCount() == 200;
+    assert small.hammingDistance(climber) >= 10 * (climber.getTriangles().size() - 20);
+    new TriangleRecycler(fitCalc).grow(small, 10);
+    assert small.getTriangles().size() == 30;
+    assert small.getFitness() == fitCalc.findFitness(small);
+
+    // A color climb goes on exactly after triangles grew under its region
+    Genome growing = Genome.randomGenomeFixedAlpha(targetImage, Constants.RANDOM, 80, 20);
+    int[] cover = { 0, 0, targetImage.getWidth() - 1, 0, 0, targetImage.getHeight() - 1, 0 };
+    for (int n = 0; n < cover.length; n++)
+    {
+      growing.setGene(n, cover[n]);
+    }
+    growing.setFitness(fitCalc.findFitness(growing));
+    HillClimbingRectMutator colorClimber = new HillClimbingRectMutator(fitCalc, g -> 6);
+    for (int i = 0; i < 100 && growing.previousGene != 6; i++)
+    {
+      colorClimber.mutateGenome(growing);
+    }
+    assert growing.previousGene == 6;
+    new TriangleRecycler(fitCalc).grow(growing, 10);
+    for (int i = 0; i < 20; i++)
+    {
+      colorClimber.mutateGenome(growing);
+    }
+    assert growing.getFitness() == fitCalc.findFitness(growing);
+
+    // Hot annealing keeps the best genome it walked away from
+    AnnealingMutator annealer = new AnnealingMutator(fitCalc, new UniformGeneSelector(), 1e9, false);
+    for (Genome g : genomes.subList(1, 3))
+    {
+      before = g.getFitness();
+      for (int i = 0; i < 300; i++)
+      {
+        annealer.mutateGenome(g);
+      }
+      assert g.getFitness() == fitCalc.findFitness(g);
+      Genome best = g.elite != null ? g.elite : g;
+      assert best.getFitness() <= before && best.getFitness() <= g.getFitness();
+      assert best.getFitness() == fitCalc.findFitness(best);
+    }
+
+    // A line search keeps the fitness exact and finds the best color of an
+    // opaque triangle, whose error is convex in each color
+    Genome opaque = Genome.randomGenomeFixedAlpha(targetImage, Constants.RANDOM, 255, 5);
+    for (int n = 0; n < 5; n++)
+    {
+      opaque.setGene(n * 10 + 9, 255);
+    }
+    opaque.setFitness(fitCalc.findFitness(opaque));
+    LineSearch lineSearch = new LineSearch(fitCalc);
+    for (int gene = 6; gene < 50; gene += gene % 10 == 8 ? 8 : 1)
+    {
+      for (int direction = -1; direction <= 1; direction += 2)
+      {
+        if (!opaque.canChange(gene, direction)) continue;
+        int origin = opaque.getGene(gene);
+        long best = opaque.getFitness();
+        for (int value = origin + direction; value >= 0 && value < Constants.COLOR_LIMIT; value += direction)
+        {
+          opaque.setGene(gene, value);
+          best = Math.min(best, fitCalc.findFitness(opaque));
+        }
+        opaque.setGene(gene, origin);
+        lineSearch.search(opaque, gene, direction);
+        assert opaque.getFitness() == fitCalc.findFitness(opaque);
+        assert opaque.getFitness() == best;
+      }
+    }
+
+    // Target colored triangles take the mean of the target over their box
+    Genome colored = Genome.targetColoredGenome(target, Constants.RANDOM, 80, 20);
+    int[] box = colored.getTriangles().get(7).getBoundingRect();
+    assert colored.getTriangles().get(7).getColors()[0] == target.rectSum(box[0], box[1], box[2] + 1, box[3] + 1, 2)
+        / ((box[2] + 1) * (box[3] + 1));
+
+    // Delaunay seeding fills every triangle and starts closer to the target
+    Genome seeded = new DelaunaySeeder(target).createGenome(Constants.RANDOM, 200);
+    assert seeded.getTriangles().size() == 200 && Genome.validGenome(seeded);
+    assert fitCalc.findFitness(seeded) < fitCalc.findFitness(Genome.targetColoredGenome(target, Constants.RANDOM, 80,
+        200));
+
+    // Collinear points still tile their hull with cells that cover pixels
+    int side = 99;
+    List<Integer> line = new ArrayList<>(Arrays.asList(0, 0, side, 0, 0, side, side, side));
+    for (int x = 7; x < side; x += 7)
+    {
+      line.addAll(Arrays.asList(x, 0, x, side / 2, x / 7, x / 7 * 4));
+    }
+    int[] points = line.stream().mapToInt(Integer::intValue).toArray();
+    long covered = 0;
+    for (int[] cell : DelaunaySeeder.triangulate(points))
+    {
+      int ax = points[cell[1] * 2] - points[cell[0] * 2];
+      int ay = points[cell[1] * 2 + 1] - points[cell[0] * 2 + 1];
+      int bx = points[cell[2] * 2] - points[cell[0] * 2];
+      int by = points[cell[2] * 2 + 1] - points[cell[0] * 2 + 1];
+      long cross = (long) ax * by - (long) ay * bx;
+      assert cross != 0;
+      covered += Math.abs(cross);
+    }
+    assert covered == 2L * side * side;
+
+    // A genome scaled to a lower level of the target stays valid there
+    Target half = target.getLevel(1);
+    Genome scaled = seeded.scaledCopy(half.getWidth(), half.getHeight());
+    assert Genome.validGenome(scaled) && scaled.getTriangles().get(0).getBoundingRect()[0] < half.getWidth();
+    seeded.rescale(half.getWidth(), half.getHeight());
+    assert seeded.equals(scaled);
+    Fitness halfFit = new Fitness(half, FitnessType.DISTANCE_SQUARED);
+    assert halfFit.findFitness(seeded) == halfFit.findFitness(scaled);
   }
 }
@@ -23,7 +23,7 @@ public class GenomeTests
   public static void checkCorrectCrossOver(Genome parent1, Genome parent2, Genome child1, Genome child2,
       int crossOverGene)
   {
-    for (int i = 0; i < Constants.GENE_COUNT; i++)
+    for (int i = 0; i < Math.min(parent1.getGeneCount(), parent2.getGeneCount()); i++)
     {
       if (i < crossOverGene)
       {
@@ -116,7 +116,7 @@ public class GenomeTests
    */
   public static void checkValidGenome(Genome g, int width, int height)
   {
-    assert g.getTriangles().size() == Constants.TRIANGLE_COUNT;
+    assert g.getTriangles().size() > 0 && g.getTriangles().size() <= Constants.MAXIMUM_TRIANGLE_COUNT;
 
     assert g.getWidth() == width;
 
@@ -0,0 +1,82 @@
+package trianglegenome.tests;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import javax.imageio.ImageIO;
+
+import trianglegenome.Constants;
+import trianglegenome.TriangleGenome;
+import trianglegenome.TriangleGenome.RunMode;
+import trianglegenome.TriangleGenomeData;
+import trianglegenome.Tribe.EvolutionMode;
+import trianglegenome.util.MutatorType;
+import trianglegenome.util.SeedingStrategy;
+
+/**
+ * Reports heap usage and garbage collection pauses of a run without the GUI
+ *
+ * Run with -Dtrianglegenome.offheap=true to compare off heap canvases
+ *
+ */
+public class MemoryBenchmark
+{
+  /**
+   * Run 64 tribes on the seated woman image and print memory statistics
+   * 
+   * @param args optional run time in seconds and number of tribes
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public static void main(String[] args) throws IOException, InterruptedException
+  {
+    int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+    int tribes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+    BufferedImage targetImage = FitnessTests.convertToGenomeFormat(ImageIO.read(MemoryBenchmark.class
+        .getClassLoader().getResource("images/seated-woman-cropped-500x500.jpg")));
+    TriangleGenomeData data = new TriangleGenomeData(tribes, targetImage.getWidth(), targetImage.getHeight());
+    TriangleGenome triangleGenome = new TriangleGenome(targetImage, tribes, data,
+        Constants.DEFAULT_INITIAL_POPULATION, Constants.DEFAULT_MAXIMUM_POPULATION, EvolutionMode.HILL_CLIMBING,
+        MutatorType.ADAPTIVE, RunMode.INDEPENDENT, Constants.DEFAULT_TRIANGLE_COUNT, false, SeedingStrategy.RANDOM);
+
+    Thread thread = new Thread(triangleGenome);
+    thread.start();
+    Thread.sleep(seconds * 1000L);
+    thread.interrupt();
+    thread.join();
+
+    long peakHeap = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+    {
+      if (pool.getType() == MemoryType.HEAP)
+      {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+    }
+    long collections = 0;
+    long collectionTime = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      collections += gc.getCollectionCount();
+      collectionTime += gc.getCollectionTime();
+    }
+    long usedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+    System.out.println("Off heap:         " + Constants.OFF_HEAP);
+    System.out.println("Tribes:           " + tribes);
+    System.out.println("Seconds:          " + seconds);
+    synchronized (data)
+    {
+      System.out.println("Generations:      " + data.generations);
+    }
+    System.out.println("Heap used (MB):   " + usedHeap / (1024 * 1024));
+    System.out.println("Peak heap (MB):   " + peakHeap / (1024 * 1024));
+    System.out.println("GC collections:   " + collections);
+    System.out.println("GC pause (ms):    " + collectionTime);
+  }
+}
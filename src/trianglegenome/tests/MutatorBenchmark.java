@@ -0,0 +1,135 @@
+package trianglegenome.tests;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import trianglegenome.Genome;
+import trianglegenome.util.AdaptiveMutator;
+import trianglegenome.util.AnnealingMutator;
+import trianglegenome.util.CompoundMutator;
+import trianglegenome.util.ErrorGuidedGeneSelector;
+import trianglegenome.util.EvolutionStrategyMutator;
+import trianglegenome.util.Fitness;
+import trianglegenome.util.Fitness.FitnessType;
+import trianglegenome.util.GeneClassSelector;
+import trianglegenome.util.GeneClassSelector.GeneClass;
+import trianglegenome.util.GeneSelector;
+import trianglegenome.util.HillClimbingRectMutator;
+import trianglegenome.util.LineSearchMutator;
+import trianglegenome.util.Mutator;
+import trianglegenome.util.OptimalColorMutator;
+import trianglegenome.util.PartitionedMutator;
+import trianglegenome.util.RandomMutator;
+import trianglegenome.util.SpsaMutator;
+import trianglegenome.util.UniformGeneSelector;
+import trianglegenome.util.ZOrderMutator;
+
+/**
+ * Compares how much fitness mutators gain per evaluation and per millisecond
+ * on the bundled images, every mutator starts from the same random genome
+ * with the alpha tribes start with
+ *
+ */
+public class MutatorBenchmark
+{
+  private static final String[] IMAGES = { "mona-lisa-face-200x200.png", "mona-lisa-cropped-512x413.png",
+      "poppyfields-512x384.png", "seated-woman-cropped-500x500.jpg", "the_great_wave_off_kanagawa-512x352.png" };
+
+  /**
+   * Run every mutator on every bundled image and print the gains
+   * 
+   * @param args optional number of evaluations per run
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException
+  {
+    long budget = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+
+    for (String name : IMAGES)
+    {
+      BufferedImage target = FitnessTests.convertToGenomeFormat(ImageIO.read(MutatorBenchmark.class
+          .getClassLoader().getResource("images/" + name)));
+      try (Fitness fitCalc = new Fitness(target, FitnessType.DISTANCE_SQUARED))
+      {
+        Genome start = Genome.randomGenomeFixedAlpha(target, 80);
+        start.setFitness(fitCalc.findFitness(start));
+        System.out.println(name);
+        report("uniform genes", new HillClimbingRectMutator(fitCalc, new UniformGeneSelector()), fitCalc,
+            start, budget);
+        report("error guided genes", new HillClimbingRectMutator(fitCalc, new ErrorGuidedGeneSelector(
+            fitCalc)), fitCalc, start, budget);
+        report("adaptive", adaptive(fitCalc, target), fitCalc, start, budget);
+        report("annealing", new AnnealingMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc)), fitCalc,
+            start, budget);
+        report("evolution strategy", new EvolutionStrategyMutator(fitCalc, new ErrorGuidedGeneSelector(
+            fitCalc)), fitCalc, start, budget);
+        report("spsa", new SpsaMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc)), fitCalc, start,
+            budget);
+        LineSearchMutator lineSearch = new LineSearchMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc));
+        report("line search", lineSearch, fitCalc, start, budget);
+        System.out.printf("  %-22s %8.2f%n", "evaluations / step", lineSearch.getLineSearch()
+            .getEvaluationsPerStep());
+        report("compound", new CompoundMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc)), fitCalc, start,
+            budget);
+        report("z-order", new ZOrderMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc)), fitCalc, start,
+            budget);
+        report("partitioned", new PartitionedMutator(fitCalc, new ErrorGuidedGeneSelector(fitCalc)), fitCalc,
+            start, budget);
+      }
+    }
+  }
+
+  /**
+   * Build the adaptive mutator tribes use
+   * 
+   * @param fitCalc calculator to evaluate with
+   * @param target target image
+   * @return adaptive mutator over climbing, random and color jumps
+   */
+  private static Mutator adaptive(Fitness fitCalc, BufferedImage target)
+  {
+    GeneSelector selector = new ErrorGuidedGeneSelector(fitCalc);
+    List<Mutator> arms = new ArrayList<>();
+    for (GeneClass geneClass : GeneClass.values())
+    {
+      GeneSelector classSelector = new GeneClassSelector(selector, geneClass);
+      arms.add(new HillClimbingRectMutator(fitCalc, classSelector));
+      arms.add(new RandomMutator(fitCalc, target.getWidth(), target.getHeight(), classSelector));
+    }
+    arms.add(new OptimalColorMutator(fitCalc, new HillClimbingRectMutator(fitCalc, selector), 1, selector));
+    return new AdaptiveMutator(arms);
+  }
+
+  /**
+   * Run a mutator on a copy of a genome until it has used up its evaluations
+   * and print what it gained
+   * 
+   * @param label name to print
+   * @param mutator mutator to run
+   * @param fitCalc calculator the mutator evaluates with
+   * @param start genome to start from
+   * @param budget evaluations to use
+   */
+  private static void report(String label, Mutator mutator, Fitness fitCalc, Genome start, long budget)
+  {
+    Genome genome = start.deepCopy();
+    genome.setFitness(start.getFitness());
+    long first = fitCalc.getEvaluations();
+    long improvements = 0;
+    long time = System.nanoTime();
+    while (fitCalc.getEvaluations() - first < budget)
+    {
+      if (mutator.mutateGenome(genome)) improvements++;
+    }
+    time = System.nanoTime() - time;
+    long evaluations = fitCalc.getEvaluations() - first;
+    long gain = start.getFitness() - genome.getFitness();
+    System.out.printf("  %-22s gain/evaluation %10d  gain/ms %10d  improvements %6d  ms %6d  fitness %10d%n",
+        label, gain / evaluations, gain * 1000000 / Math.max(time, 1), improvements, time / 1000000, genome
+            .getFitness());
+  }
+}
@@ -0,0 +1,55 @@
+package trianglegenome.util;
+
+import java.util.List;
+
+import trianglegenome.Genome;
+
+/**
+ * Shares the steps between other mutators with an operator bandit
+ *
+ * A climb started by one mutator is continued by the same mutator, the
+ * bandit only chooses when a genome starts something new
+ *
+ */
+public class AdaptiveMutator implements Mutator
+{
+  private List<Mutator> arms;
+  private OperatorBandit bandit;
+
+  /**
+   * Create a new adaptive mutator
+   * 
+   * @param arms mutators to choose from
+   */
+  public AdaptiveMutator(List<Mutator> arms)
+  {
+    this.arms = arms;
+    this.bandit = new OperatorBandit(arms.size());
+  }
+
+  /**
+   * Mutate a genome with the mutator the bandit chooses
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    int arm = genome.previousGene != -1 && genome.climbOperator != -1 ? genome.climbOperator : bandit
+        .selectArm();
+    long fitness = genome.getFitness();
+    long start = System.nanoTime();
+    boolean improved = arms.get(arm).mutateGenome(genome);
+    bandit.reward(arm, fitness - genome.getFitness(), System.nanoTime() - start);
+    genome.climbOperator = genome.previousGene != -1 ? arm : -1;
+    return improved;
+  }
+
+  /**
+   * Get the bandit choosing the mutators
+   * 
+   * @return bandit, arms in the order of the mutators
+   */
+  public OperatorBandit getBandit()
+  {
+    return bandit;
+  }
+}
@@ -0,0 +1,172 @@
+package trianglegenome.util;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+
+/**
+ * Simulated annealing, worse moves are accepted with the Metropolis
+ * probability exp(-increase / temperature)
+ *
+ * Moves change one gene by up to Constants.ANNEALING_STEP and are scored on
+ * the region they touch. An adaptive temperature is raised or lowered after
+ * every worse move so about Constants.ANNEALING_TARGET_ACCEPTANCE of them are
+ * accepted, and is raised by Constants.ANNEALING_REHEAT when no new best
+ * fitness was found for Constants.ANNEALING_STAGNATION steps. A fixed
+ * temperature is left alone
+ *
+ * The adaptive temperature and the search for a new best are kept on every
+ * genome, so one mutator can anneal a whole population. Before a genome at
+ * its best takes a worse move a copy of it is kept as its elite
+ *
+ */
+public class AnnealingMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private GeneSelector selector;
+  private double temperature;
+  private final boolean adaptive;
+
+  /**
+   * Create a new annealing mutator with an adaptive temperature, the first
+   * worse move sets the starting temperature
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the gene to change
+   */
+  public AnnealingMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this(fitCalc, selector, 0, true);
+  }
+
+  /**
+   * Create a new annealing mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the gene to change
+   * @param temperature temperature in units of fitness, an adaptive mutator
+   *          starts every genome at it
+   * @param adaptive true to adapt the temperature of every genome to its
+   *          acceptance rate
+   */
+  public AnnealingMutator(Fitness fitCalc, GeneSelector selector, double temperature, boolean adaptive)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+    this.temperature = temperature;
+    this.adaptive = adaptive;
+  }
+
+  /**
+   * Get the fixed temperature, or the starting temperature of an adaptive
+   * mutator
+   * 
+   * @return temperature in units of fitness
+   */
+  public double getTemperature()
+  {
+    return temperature;
+  }
+
+  /**
+   * Set the temperature
+   * 
+   * @param temperature temperature in units of fitness
+   */
+  public void setTemperature(double temperature)
+  {
+    this.temperature = temperature;
+  }
+
+  /**
+   * Propose a move and accept it by the Metropolis rule
+   * 
+   * @return true if the genome improved
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Annealing does not continue climbs
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+    // Other operators may have improved the genome since its last step
+    trackBest(genome);
+
+    int gene = selector.selectGene(genome);
+    int delta = (1 + Constants.RANDOM.nextInt(Constants.ANNEALING_STEP))
+        * (Constants.RANDOM.nextBoolean() ? 1 : -1);
+    if (!genome.canChange(gene, delta)) delta = -delta;
+    if (!genome.canChange(gene, delta)) return false;
+
+    int[] rect = genome.getGeneChangeRect(gene, delta);
+    long oldFitness = fitCalc.findRectFitness(genome, rect);
+    genome.changeGene(gene, delta);
+    long increase = fitCalc.findRectFitness(genome, rect) - oldFitness;
+
+    boolean accepted = increase <= 0;
+    if (increase > 0)
+    {
+      double t = adaptive ? genome.temperature : temperature;
+      // A genome starts at the starting temperature or its first worse move
+      if (t <= 0 && adaptive) t = temperature > 0 ? temperature : increase;
+      accepted = Constants.RANDOM.nextDouble() < Math.exp(-increase / t);
+      if (adaptive)
+      {
+        // Cool when accepting more than the target, warm when accepting less
+        double error = (accepted ? 1 : 0) - Constants.ANNEALING_TARGET_ACCEPTANCE;
+        genome.temperature = t * Math.exp(-Constants.ANNEALING_ADAPT_RATE * error);
+      }
+    }
+
+    if (accepted)
+    {
+      if (increase > 0 && genome.getFitness() <= genome.annealingBest)
+      {
+        // Keep the best genome before leaving it, without the move
+        Genome elite = genome.deepCopy();
+        elite.changeGene(gene, -delta);
+        elite.setFitness(genome.getFitness());
+        genome.elite = elite;
+      }
+      genome.fitness += increase;
+      genome.changed(gene / 10, rect);
+    }
+    else
+    {
+      genome.changeGene(gene, -delta);
+    }
+    trackStagnation(genome);
+    return accepted && increase < 0;
+  }
+
+  /**
+   * Reheat a genome when it has not found a new best for a while
+   * 
+   * @param genome genome that was just mutated
+   */
+  private void trackStagnation(Genome genome)
+  {
+    if (trackBest(genome)) return;
+    if (++genome.stagnantSteps >= Constants.ANNEALING_STAGNATION && adaptive)
+    {
+      genome.temperature *= Constants.ANNEALING_REHEAT;
+      genome.stagnantSteps = 0;
+    }
+  }
+
+  /**
+   * Make a genome its own best when it beats the best it has been, dropping
+   * its elite
+   * 
+   * @param genome genome to check
+   * @return true if the genome is at a new best
+   */
+  private static boolean trackBest(Genome genome)
+  {
+    if (genome.getFitness() >= genome.annealingBest) return false;
+    genome.annealingBest = genome.getFitness();
+    genome.elite = null;
+    genome.stagnantSteps = 0;
+    return true;
+  }
+}
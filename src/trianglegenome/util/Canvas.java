@@ -0,0 +1,272 @@
+package trianglegenome.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Packed BGR drawing surface for genomes
+ *
+ * Pixels are laid out like the target pixels, 3 bytes per pixel row by row.
+ * The pixels may live off the heap so large canvases add no garbage collection
+ * pressure, a canvas is released with close once its owner is done with it.
+ * Triangles are covered and blended exactly like Graphics.fillPolygon draws
+ * them on an image in the project format
+ *
+ */
+public class Canvas implements AutoCloseable
+{
+  private final int width;
+  private final int height;
+  private ByteBuffer pixels;
+
+  /**
+   * Create a new white canvas, off the heap if Constants.OFF_HEAP is set
+   * 
+   * @param width width of the canvas
+   * @param height height of the canvas
+   */
+  public Canvas(int width, int height)
+  {
+    this(width, height, Constants.OFF_HEAP);
+  }
+
+  /**
+   * Create a new white canvas
+   * 
+   * @param width width of the canvas
+   * @param height height of the canvas
+   * @param offHeap true to keep the pixels off the heap
+   */
+  public Canvas(int width, int height, boolean offHeap)
+  {
+    this.width = width;
+    this.height = height;
+    int size = width * height * 3;
+    pixels = offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    clear();
+  }
+
+  /**
+   * Create a canvas that draws straight into an image in the project format,
+   * no pixels are copied
+   * 
+   * @param image image to draw on
+   */
+  public Canvas(BufferedImage image)
+  {
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    pixels = ByteBuffer.wrap(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+  }
+
+  /**
+   * Get the width of the canvas
+   * 
+   * @return width
+   */
+  public int getWidth()
+  {
+    return width;
+  }
+
+  /**
+   * Get the height of the canvas
+   * 
+   * @return height
+   */
+  public int getHeight()
+  {
+    return height;
+  }
+
+  /**
+   * Get the packed BGR pixels
+   * 
+   * @return pixels, 3 bytes per pixel row by row
+   */
+  public ByteBuffer getPixels()
+  {
+    return pixels;
+  }
+
+  /**
+   * Fill the canvas with white
+   */
+  public void clear()
+  {
+    for (int i = 0; i < pixels.capacity(); i++)
+    {
+      pixels.put(i, (byte) 0xff);
+    }
+  }
+
+  /**
+   * Clear the canvas and draw the first triangles of a genome
+   * 
+   * @param genome genome to draw
+   * @param numberOfTriangles how many triangles to draw
+   */
+  public void drawGenome(Genome genome, int numberOfTriangles)
+  {
+    clear();
+    for (int i = 0; i < numberOfTriangles; i++)
+    {
+      fillTriangle(genome.getTriangles().get(i));
+    }
+  }
+
+  /**
+   * Redraw only a rectangle of the canvas with the first triangles of a genome,
+   * pixels outside the rectangle are left as they were
+   * 
+   * @param genome genome to draw
+   * @param numberOfTriangles how many triangles to draw
+   * @param rect x, y, width and height of the region
+   */
+  public void drawRegion(Genome genome, int numberOfTriangles, int[] rect)
+  {
+    int left = Math.max(rect[0], 0);
+    int top = Math.max(rect[1], 0);
+    int right = Math.min(rect[0] + rect[2], width);
+    int bottom = Math.min(rect[1] + rect[3], height);
+    for (int y = top; y < bottom; y++)
+    {
+      for (int i = (y * width + left) * 3, last = (y * width + right) * 3; i < last; i++)
+      {
+        pixels.put(i, (byte) 0xff);
+      }
+    }
+    for (int i = 0; i < numberOfTriangles; i++)
+    {
+      fillTriangle(genome.getTriangles().get(i), left, top, right, bottom);
+    }
+  }
+
+  /**
+   * Blend a triangle over the canvas by replaying its cached spans
+   * 
+   * @param triangle triangle to draw
+   */
+  public void fillTriangle(Triangle triangle)
+  {
+    fillTriangle(triangle, 0, 0, width, height);
+  }
+
+  /**
+   * Blend the part of a triangle inside a clip rectangle over the canvas
+   * 
+   * @param triangle triangle to draw
+   * @param left first column of the clip
+   * @param top first row of the clip
+   * @param right column after the clip
+   * @param bottom row after the clip
+   */
+  private void fillTriangle(Triangle triangle, int left, int top, int right, int bottom)
+  {
+    int[] spans = triangle.getSpans();
+    int first = Math.max(spans[0], top);
+    int last = Math.min(spans[0] + spans[1], bottom);
+    for (int y = first; y < last; y++)
+    {
+      int index = 2 + (y - spans[0]) * 2;
+      int start = Math.max(spans[index], left);
+      int end = Math.min(spans[index + 1], right);
+      if (start < end)
+      {
+        blendSpan(y, start, end, triangle.getColors());
+      }
+    }
+  }
+
+  /**
+   * Blend a color over part of a row
+   * 
+   * @param y row
+   * @param start first pixel of the span
+   * @param end pixel after the span
+   * @param colors r g b a color values
+   */
+  void blendSpan(int y, int start, int end, int[] colors)
+  {
+    int alpha = colors[3];
+    int inverse = 255 - alpha;
+    int blue = colors[2] * alpha;
+    int green = colors[1] * alpha;
+    int red = colors[0] * alpha;
+    for (int i = (y * width + start) * 3, last = (y * width + end) * 3; i < last; i += 3)
+    {
+      pixels.put(i, blend(blue, pixels.get(i), inverse));
+      pixels.put(i + 1, blend(green, pixels.get(i + 1), inverse));
+      pixels.put(i + 2, blend(red, pixels.get(i + 2), inverse));
+    }
+  }
+
+  /**
+   * Source over blend of one channel, each term is rounded on its own like the
+   * Java2D blending loops so images match what Graphics would draw
+   * 
+   * @param source source value already multiplied by alpha
+   * @param dest destination byte
+   * @param inverse 255 - alpha
+   * @return blended byte
+   */
+  static byte blend(int source, byte dest, int inverse)
+  {
+    int src = source + 128;
+    int dst = (dest & 0xff) * inverse + 128;
+    return (byte) (((src + (src >> 8)) >> 8) + ((dst + (dst >> 8)) >> 8));
+  }
+
+  /**
+   * Copy the pixels into an image in the project format
+   * 
+   * @param image image to copy to
+   */
+  public void copyTo(BufferedImage image)
+  {
+    byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    ByteBuffer source = pixels.duplicate();
+    source.clear();
+    source.get(data, 0, Math.min(data.length, source.capacity()));
+  }
+
+  /**
+   * Release the pixels, the canvas can not be used afterwards. Pixels off the
+   * heap are freed at once, pixels on the heap at the next collection
+   */
+  @Override
+  public void close()
+  {
+    if (pixels != null && pixels.isDirect()) free(pixels);
+    pixels = null;
+  }
+
+  /**
+   * Free the memory of a direct buffer through the cleaner of the runtime,
+   * the buffer must not be used afterwards
+   * 
+   * @param buffer direct buffer to free
+   */
+  private static void free(ByteBuffer buffer)
+  {
+    try
+    {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      invokeCleaner.invoke(field.get(null), buffer);
+    }
+    catch (ReflectiveOperationException | RuntimeException e)
+    {
+      // Without the cleaner the memory is freed when the buffer is collected
+    }
+  }
+}
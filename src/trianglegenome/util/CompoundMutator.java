@@ -0,0 +1,113 @@
+package trianglegenome.util;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+
+/**
+ * Mutator that changes several genes at once as one transaction of the
+ * genome's journal
+ *
+ * A step moves a vertex, moves a whole triangle, changes the red, green and
+ * blue of a triangle or swaps a triangle with its neighbour in the drawing
+ * order. The move is scored with one region fitness before and one after, and
+ * rolled back if it is not better
+ *
+ */
+public class CompoundMutator implements Mutator
+{
+  private static final int VERTEX = 0;
+  private static final int TRANSLATE = 1;
+  private static final int RECOLOR = 2;
+  private static final int SWAP = 3;
+
+  private Fitness fitCalc;
+  private GeneSelector selector;
+
+  /**
+   * Create a new compound mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the triangle to change, through any of its genes
+   */
+  public CompoundMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+  }
+
+  /**
+   * Make one compound move and keep it if it improved the genome
+   * 
+   * @return true if the genome improved
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Compound moves do not continue climbs
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    int index = selector.selectGene(genome) / 10;
+    int move = Constants.RANDOM.nextInt(4);
+    int[] steps = new int[3];
+    for (int i = 0; i < steps.length; i++)
+    {
+      steps[i] = (int) Math.round(Constants.RANDOM.nextGaussian() * Constants.COMPOUND_STEP);
+    }
+    int other = index + (Constants.RANDOM.nextBoolean() ? 1 : -1);
+    if (move == SWAP && (other < 0 || other >= genome.getTriangles().size())) return false;
+
+    // The move is made once without scoring to find its region
+    MutationJournal journal = genome.journal;
+    journal.begin();
+    apply(journal, move, index, other, steps);
+    int[] rect = journal.getDirtyRect();
+    journal.rollback();
+
+    long before = fitCalc.findRectFitness(genome, rect);
+    journal.begin();
+    apply(journal, move, index, other, steps);
+    long after = fitCalc.findRectFitness(genome, rect);
+    if (after < before)
+    {
+      journal.commit();
+      genome.fitness += after - before;
+      genome.changed(index, rect);
+      if (move == SWAP) genome.changed(other, rect);
+      return true;
+    }
+    journal.rollback();
+    return false;
+  }
+
+  /**
+   * Make a move through the journal
+   * 
+   * @param journal journal of the genome, with an open transaction
+   * @param move kind of move
+   * @param index triangle to change
+   * @param other neighbour to swap with
+   * @param steps random steps of the move
+   */
+  private static void apply(MutationJournal journal, int move, int index, int other, int[] steps)
+  {
+    switch (move)
+    {
+      case VERTEX:
+        journal.moveVertex(index, Math.floorMod(steps[2], 3), steps[0], steps[1]);
+        break;
+      case TRANSLATE:
+        journal.translate(index, steps[0], steps[1]);
+        break;
+      case RECOLOR:
+        journal.recolor(index, steps[0], steps[1], steps[2]);
+        break;
+      case SWAP:
+        journal.swap(index, other);
+        break;
+      default:
+        break;
+    }
+  }
+}
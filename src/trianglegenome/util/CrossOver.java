@@ -8,6 +8,9 @@ import trianglegenome.Genome;
 /**
  * Crossover utility methods
  * 
+ * Parents may have different numbers of triangles, only the genes they share
+ * are crossed and the children have as many triangles as the first parent
+ * 
  */
 public class CrossOver
 {
@@ -29,7 +32,7 @@ public class CrossOver
 
     int point = Constants.RANDOM.nextInt(distance - 1) + 1;
 
-    for (int i = 0; i < Constants.GENE_COUNT; i++)
+    for (int i = 0; i < Math.min(g1.getGeneCount(), g2.getGeneCount()); i++)
     {
       if (g1.getGene(i) != g2.getGene(i)) differences++;
 
@@ -52,7 +55,7 @@ public class CrossOver
     Genome child1 = g1.deepCopy();
     Genome child2 = g1.deepCopy();
 
-    for (int i = 0; i < Constants.GENE_COUNT; i++)
+    for (int i = 0; i < Math.min(g1.getGeneCount(), g2.getGeneCount()); i++)
     {
       if (i < crossOverGene)
       {
@@ -93,7 +96,7 @@ public class CrossOver
   {
     Genome child1 = g1.deepCopy();
     Genome child2 = g1.deepCopy();
-    for (int i = 0; i < Constants.GENE_COUNT; i++)
+    for (int i = 0; i < Math.min(g1.getGeneCount(), g2.getGeneCount()); i++)
     {
       if (rand.nextInt(2) == 0)
       {
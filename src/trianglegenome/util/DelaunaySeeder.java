@@ -0,0 +1,350 @@
+package trianglegenome.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Creates genomes whose triangles follow the edges of the target
+ *
+ * Points are picked where the gradient of the target is steep, each at least a
+ * spacing away from the others and with random weights so no two genomes are
+ * the same, and joined with the corners of the image by a Delaunay
+ * triangulation built by Bowyer-Watson insertion. The cells of the
+ * triangulation whose mean color is furthest from the white canvas, weighted by
+ * their area, become the triangles of the genome, colored so that one cell
+ * drawn on white shows the mean of the target under it. The gradient and the
+ * steepest pixels are found once per target, every genome after that only
+ * sorts those pixels by their weight
+ *
+ */
+public class DelaunaySeeder
+{
+  private final Target target;
+  private final float[] gradient;
+  private final int[] candidates;
+  private static final double JITTER = 0.001;
+
+  /**
+   * Create a seeder for a target
+   * 
+   * @param target target to follow
+   */
+  public DelaunaySeeder(Target target)
+  {
+    this.target = target;
+    int width = target.getWidth();
+    int height = target.getHeight();
+    ByteBuffer pixels = target.getPixels();
+    int[] gray = new int[width * height];
+    for (int i = 0; i < gray.length; i++)
+    {
+      gray[i] = (pixels.get(i * 3) & 0xff) + (pixels.get(i * 3 + 1) & 0xff) + (pixels.get(i * 3 + 2) & 0xff);
+    }
+    // Sobel magnitude, points on the border of the image are never picked
+    gradient = new float[width * height];
+    for (int y = 1; y < height - 1; y++)
+    {
+      for (int x = 1; x < width - 1; x++)
+      {
+        int i = y * width + x;
+        int gx = gray[i - width + 1] + 2 * gray[i + 1] + gray[i + width + 1] - gray[i - width - 1] - 2 * gray[i - 1]
+            - gray[i + width - 1];
+        int gy = gray[i + width - 1] + 2 * gray[i + width] + gray[i + width + 1] - gray[i - width - 1]
+            - 2 * gray[i - width] - gray[i - width + 1];
+        gradient[i] = (float) Math.sqrt((double) gx * gx + (double) gy * gy);
+      }
+    }
+    // Only the steepest pixels are ever weighed as points
+    long[] keys = new long[gradient.length];
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = (long) Float.floatToIntBits(gradient[i]) << 32 | i;
+    }
+    Arrays.sort(keys);
+    int count = 0;
+    while (count < Math.min(keys.length, Constants.DELAUNAY_CANDIDATES) && keys[keys.length - 1 - count] >> 32 != 0)
+    {
+      count++;
+    }
+    candidates = new int[count];
+    for (int k = 0; k < count; k++)
+    {
+      candidates[k] = (int) keys[keys.length - 1 - k];
+    }
+  }
+
+  /**
+   * Create a genome from a triangulation of edge points of the target
+   * 
+   * @param rand random generator
+   * @param triangleCount number of triangles, at least 4
+   * @return new genome, topped up with target colored random triangles if
+   *         the triangulation has too few cells
+   */
+  public Genome createGenome(Random rand, int triangleCount)
+  {
+    int width = target.getWidth();
+    int height = target.getHeight();
+    // With the four corners as its hull a triangulation of n points has 2n - 6
+    // cells, a few more than needed leave a choice
+    int[] points = pickPoints(rand, triangleCount / 2 + 4);
+    List<int[]> cells = triangulate(points);
+
+    // Cells that remove the most error from the white canvas first
+    double[] gains = new double[cells.size()];
+    Integer[] order = new Integer[cells.size()];
+    for (int c = 0; c < cells.size(); c++)
+    {
+      order[c] = c;
+      int[] cell = cells.get(c);
+      int[] box = boundingBox(points, cell);
+      double gain = 0;
+      for (int band = 0; band < 3; band++)
+      {
+        double diff = 255 - target.rectMean(box[0], box[1], box[2], box[3], band);
+        gain += diff * diff;
+      }
+      gains[c] = gain * area(points, cell);
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(gains[b], gains[a]));
+
+    List<int[]> chosen = new ArrayList<>();
+    for (int c = 0; c < Math.min(triangleCount, cells.size()); c++)
+    {
+      chosen.add(cells.get(order[c]));
+    }
+    // Large cells are drawn first
+    chosen.sort((a, b) -> Long.compare(area(points, b), area(points, a)));
+
+    List<Triangle> triangles = new ArrayList<>(triangleCount);
+    int alpha = Constants.DELAUNAY_ALPHA;
+    for (int[] cell : chosen)
+    {
+      int[] xPoints = { points[cell[0] * 2], points[cell[1] * 2], points[cell[2] * 2] };
+      int[] yPoints = { points[cell[0] * 2 + 1], points[cell[1] * 2 + 1], points[cell[2] * 2 + 1] };
+      int[] box = boundingBox(points, cell);
+      int[] colors = new int[4];
+      for (int band = 0; band < 3; band++)
+      {
+        // Drawn on white the cell then shows the mean of the target
+        int mean = target.rectMean(box[0], box[1], box[2], box[3], band);
+        colors[2 - band] = Math.max(0, Math.min(255, 255 * (mean - 255 + alpha) / alpha));
+      }
+      colors[3] = alpha;
+      triangles.add(new Triangle(xPoints, yPoints, colors, width, height));
+    }
+    while (triangles.size() < triangleCount)
+    {
+      Triangle triangle = Triangle.createRandomFixedAlpha(width, height, rand, alpha);
+      Genome.colorFromTarget(triangle, target);
+      triangles.add(triangle);
+    }
+    return new Genome(triangles, width, height);
+  }
+
+  /**
+   * Pick the corners of the image and points on its edges
+   * 
+   * @param rand random generator weighting the points
+   * @param count number of points, at least 4
+   * @return x and y of every point, the corners first, fewer than count if
+   *         the image is too small to hold them apart
+   */
+  private int[] pickPoints(Random rand, int count)
+  {
+    int width = target.getWidth();
+    int height = target.getHeight();
+    int[] points = new int[count * 2];
+    int[] corners = { 0, 0, width - 1, 0, 0, height - 1, width - 1, height - 1 };
+    System.arraycopy(corners, 0, points, 0, 8);
+    int picked = 4;
+
+    // Weight and index packed together sort by weight, weights are positive
+    long[] keys = new long[candidates.length];
+    for (int k = 0; k < keys.length; k++)
+    {
+      float weight = gradient[candidates[k]] * (0.5f + rand.nextFloat());
+      keys[k] = (long) Float.floatToIntBits(weight) << 32 | candidates[k];
+    }
+    Arrays.sort(keys);
+
+    double spacing = Math.sqrt((double) width * height / count) * Constants.DELAUNAY_SPACING;
+    int radius = (int) spacing;
+    boolean[] blocked = new boolean[width * height];
+    for (int c = 0; c < 4; c++)
+    {
+      blocked[corners[c * 2 + 1] * width + corners[c * 2]] = true;
+    }
+    for (int k = keys.length - 1; k >= 0 && picked < count; k--)
+    {
+      int i = (int) keys[k];
+      if (blocked[i]) continue;
+      int x = i % width;
+      int y = i / width;
+      points[picked * 2] = x;
+      points[picked * 2 + 1] = y;
+      picked++;
+      for (int dy = -radius; dy <= radius; dy++)
+      {
+        for (int dx = -radius; dx <= radius; dx++)
+        {
+          if (dx * dx + dy * dy > spacing * spacing) continue;
+          int bx = x + dx;
+          int by = y + dy;
+          if (bx >= 0 && by >= 0 && bx < width && by < height) blocked[by * width + bx] = true;
+        }
+      }
+    }
+    // A flat target has too few edges, the rest go anywhere still free
+    for (int tries = 0; tries < count * 100 && picked < count; tries++)
+    {
+      int x = rand.nextInt(width);
+      int y = rand.nextInt(height);
+      if (blocked[y * width + x]) continue;
+      blocked[y * width + x] = true;
+      points[picked * 2] = x;
+      points[picked * 2 + 1] = y;
+      picked++;
+    }
+    return Arrays.copyOf(points, picked * 2);
+  }
+
+  /**
+   * Build the Delaunay triangulation of a set of points by Bowyer-Watson
+   * insertion
+   * 
+   * Points of the pixel grid often lie on one line, and three of them make a
+   * flat cell with no circumcircle. Every point is moved by less than JITTER
+   * of a pixel while triangulating, so no three of them are collinear and no
+   * four are on one circle
+   * 
+   * @param points x and y of every point, no two the same
+   * @return cells as the indexes of their three points
+   */
+  public static List<int[]> triangulate(int[] points)
+  {
+    int count = points.length / 2;
+    // Three more points far outside hold every other point, far enough that
+    // the thin cells along the hull keep their circumcircles clear of them
+    double[] x = new double[count + 3];
+    double[] y = new double[count + 3];
+    double size = 1;
+    Random jitter = new Random(count);
+    for (int i = 0; i < count; i++)
+    {
+      x[i] = points[i * 2] + (jitter.nextDouble() - 0.5) * JITTER;
+      y[i] = points[i * 2 + 1] + (jitter.nextDouble() - 0.5) * JITTER;
+      size = Math.max(size, Math.max(x[i], y[i]));
+    }
+    x[count] = -2000 * size;
+    y[count] = -size;
+    x[count + 1] = 2000 * size;
+    y[count + 1] = -size;
+    x[count + 2] = size / 2;
+    y[count + 2] = 2000 * size;
+
+    List<int[]> cells = new ArrayList<>();
+    List<double[]> circles = new ArrayList<>();
+    addCell(cells, circles, x, y, count, count + 1, count + 2);
+    for (int p = 0; p < count; p++)
+    {
+      // Remove every cell whose circumcircle holds the point
+      Map<Long, int[]> boundary = new HashMap<>();
+      for (int c = cells.size() - 1; c >= 0; c--)
+      {
+        double[] circle = circles.get(c);
+        double dx = x[p] - circle[0];
+        double dy = y[p] - circle[1];
+        if (dx * dx + dy * dy >= circle[2]) continue;
+        int[] cell = cells.get(c);
+        for (int e = 0; e < 3; e++)
+        {
+          int a = Math.min(cell[e], cell[(e + 1) % 3]);
+          int b = Math.max(cell[e], cell[(e + 1) % 3]);
+          long key = (long) a * (count + 3) + b;
+          // An edge shared by two removed cells is inside the hole
+          if (boundary.remove(key) == null) boundary.put(key, new int[] { a, b });
+        }
+        int last = cells.size() - 1;
+        cells.set(c, cells.get(last));
+        circles.set(c, circles.get(last));
+        cells.remove(last);
+        circles.remove(last);
+      }
+      // Fill the hole with cells joining its edges to the point
+      for (int[] edge : boundary.values())
+      {
+        addCell(cells, circles, x, y, edge[0], edge[1], p);
+      }
+    }
+
+    List<int[]> result = new ArrayList<>();
+    for (int[] cell : cells)
+    {
+      // Collinear points joined by the jitter cover nothing
+      if (cell[0] < count && cell[1] < count && cell[2] < count && area(points, cell) > 0) result.add(cell);
+    }
+    return result;
+  }
+
+  /**
+   * Add a cell and its circumcircle
+   */
+  private static void addCell(List<int[]> cells, List<double[]> circles, double[] x, double[] y, int a, int b,
+      int c)
+  {
+    double d = 2 * (x[a] * (y[b] - y[c]) + x[b] * (y[c] - y[a]) + x[c] * (y[a] - y[b]));
+    double[] circle;
+    if (d == 0)
+    {
+      // Jittered points are never collinear, a flat cell would never be removed
+      circle = new double[] { 0, 0, Double.NEGATIVE_INFINITY };
+    }
+    else
+    {
+      double sa = x[a] * x[a] + y[a] * y[a];
+      double sb = x[b] * x[b] + y[b] * y[b];
+      double sc = x[c] * x[c] + y[c] * y[c];
+      double cx = (sa * (y[b] - y[c]) + sb * (y[c] - y[a]) + sc * (y[a] - y[b])) / d;
+      double cy = (sa * (x[c] - x[b]) + sb * (x[a] - x[c]) + sc * (x[b] - x[a])) / d;
+      circle = new double[] { cx, cy, (x[a] - cx) * (x[a] - cx) + (y[a] - cy) * (y[a] - cy) };
+    }
+    cells.add(new int[] { a, b, c });
+    circles.add(circle);
+  }
+
+  /**
+   * Get the bounding box of a cell, holding the pixels of its vertices
+   * 
+   * @return x, y, width and height, width and height at least 1
+   */
+  private static int[] boundingBox(int[] points, int[] cell)
+  {
+    int left = Math.min(points[cell[0] * 2], Math.min(points[cell[1] * 2], points[cell[2] * 2]));
+    int right = Math.max(points[cell[0] * 2], Math.max(points[cell[1] * 2], points[cell[2] * 2]));
+    int top = Math.min(points[cell[0] * 2 + 1], Math.min(points[cell[1] * 2 + 1], points[cell[2] * 2 + 1]));
+    int bottom = Math.max(points[cell[0] * 2 + 1], Math.max(points[cell[1] * 2 + 1], points[cell[2] * 2 + 1]));
+    return new int[] { left, top, right - left + 1, bottom - top + 1 };
+  }
+
+  /**
+   * Get twice the area of a cell
+   */
+  private static long area(int[] points, int[] cell)
+  {
+    long ax = points[cell[1] * 2] - points[cell[0] * 2];
+    long ay = points[cell[1] * 2 + 1] - points[cell[0] * 2 + 1];
+    long bx = points[cell[2] * 2] - points[cell[0] * 2];
+    long by = points[cell[2] * 2 + 1] - points[cell[0] * 2 + 1];
+    return Math.abs(ax * by - ay * bx);
+  }
+}
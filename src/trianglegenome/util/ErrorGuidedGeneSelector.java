@@ -0,0 +1,74 @@
+package trianglegenome.util;
+
+import java.util.List;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Chooses triangles in proportion to the error under their bounding rectangle
+ * and then a random gene of the triangle
+ *
+ * The error map of a genome is measured again after
+ * Constants.ERROR_MAP_REFRESH selections, in between it goes stale in the
+ * regions that were changed
+ *
+ */
+public class ErrorGuidedGeneSelector implements GeneSelector
+{
+  private Fitness fitCalc;
+
+  /**
+   * Create a new error guided selector
+   * 
+   * @param fitCalc fitness calculator that fills the error maps
+   */
+  public ErrorGuidedGeneSelector(Fitness fitCalc)
+  {
+    this.fitCalc = fitCalc;
+  }
+
+  /**
+   * Choose a gene, should only be called while the genome matches its fitness
+   */
+  @Override
+  public int selectGene(Genome genome)
+  {
+    ErrorMap map = genome.errorMap;
+    if (map == null || map.selections >= Constants.ERROR_MAP_REFRESH)
+    {
+      genome.setFitness(fitCalc.findFitness(genome));
+      map = genome.errorMap;
+    }
+    map.selections++;
+
+    List<Triangle> triangles = genome.getTriangles();
+    long[] cumulative = new long[triangles.size()];
+    long total = 0;
+    for (int i = 0; i < triangles.size(); i++)
+    {
+      // Every triangle keeps some chance so covered ones can still move
+      total += map.rectError(triangles.get(i).getBoundingRect()) + 1;
+      cumulative[i] = total;
+    }
+
+    // First triangle whose running total passes the pick
+    long pick = (long) (Constants.RANDOM.nextDouble() * total);
+    int low = 0;
+    int high = cumulative.length - 1;
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (cumulative[middle] <= pick)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low * 10 + Constants.RANDOM.nextInt(10);
+  }
+}
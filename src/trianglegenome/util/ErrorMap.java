@@ -0,0 +1,239 @@
+package trianglegenome.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Coarse map of where a genome differs from the target
+ *
+ * The image is cut into square tiles and the distance of every tile is kept
+ * together with a summed area table over the tiles, so the error under any
+ * rectangle is found in constant time. Fitness fills the map whenever it
+ * finds the full fitness of a genome. The sum of absolute channel differences
+ * of every tile is kept as well, and a tile changed since the map was filled
+ * is marked stale, so the error of the tiles that are not is known exactly
+ *
+ */
+public class ErrorMap
+{
+  private final int tileSize;
+  private final int columns;
+  private final int rows;
+  private final long[] errors;
+  private final long[] sums;
+  private final long[] absoluteErrors;
+  private final long[] absoluteSums;
+  private final BitSet stale = new BitSet();
+  int selections;
+
+  /**
+   * Create an empty error map
+   * 
+   * @param width width of the image
+   * @param height height of the image
+   * @param tileSize width and height of a tile
+   */
+  public ErrorMap(int width, int height, int tileSize)
+  {
+    this.tileSize = tileSize;
+    this.columns = (width + tileSize - 1) / tileSize;
+    this.rows = (height + tileSize - 1) / tileSize;
+    errors = new long[columns * rows];
+    sums = new long[(columns + 1) * (rows + 1)];
+    absoluteErrors = new long[columns * rows];
+    absoluteSums = new long[(columns + 1) * (rows + 1)];
+  }
+
+  /**
+   * Check if the map fits an image
+   * 
+   * @param width width of the image
+   * @param height height of the image
+   * @param tileSize width and height of a tile
+   * @return true if the map has the same tiles
+   */
+  public boolean fits(int width, int height, int tileSize)
+  {
+    return this.tileSize == tileSize && columns == (width + tileSize - 1) / tileSize
+        && rows == (height + tileSize - 1) / tileSize;
+  }
+
+  /**
+   * Get the width and height of a tile
+   * 
+   * @return tile size in pixels
+   */
+  public int getTileSize()
+  {
+    return tileSize;
+  }
+
+  /**
+   * Get the number of tile columns
+   * 
+   * @return columns
+   */
+  public int getColumns()
+  {
+    return columns;
+  }
+
+  /**
+   * Get the number of tile rows
+   * 
+   * @return rows
+   */
+  public int getRows()
+  {
+    return rows;
+  }
+
+  /**
+   * Get the error of a tile
+   * 
+   * @param column tile column
+   * @param row tile row
+   * @return distance of the tile
+   */
+  public long getTileError(int column, int row)
+  {
+    return errors[row * columns + column];
+  }
+
+  /**
+   * Set every tile error to 0 before the map is filled again
+   */
+  void clear()
+  {
+    Arrays.fill(errors, 0);
+    Arrays.fill(absoluteErrors, 0);
+    stale.clear();
+    selections = 0;
+  }
+
+  /**
+   * Add to the error of a tile
+   * 
+   * @param column tile column
+   * @param row tile row
+   * @param error distance to add
+   * @param absoluteError sum of absolute channel differences to add
+   */
+  void add(int column, int row, long error, long absoluteError)
+  {
+    errors[row * columns + column] += error;
+    absoluteErrors[row * columns + column] += absoluteError;
+  }
+
+  /**
+   * Build the summed area table once every tile is filled
+   */
+  void finish()
+  {
+    summarize(errors, sums);
+    summarize(absoluteErrors, absoluteSums);
+  }
+
+  /**
+   * Fill a summed area table from tile values
+   * 
+   * @param values value of every tile, row by row
+   * @param table summed area table with an extra row and column of zeros
+   */
+  private void summarize(long[] values, long[] table)
+  {
+    int stride = columns + 1;
+    for (int row = 0; row < rows; row++)
+    {
+      long rowSum = 0;
+      for (int column = 0; column < columns; column++)
+      {
+        rowSum += values[row * columns + column];
+        table[(row + 1) * stride + column + 1] = table[row * stride + column + 1] + rowSum;
+      }
+    }
+  }
+
+  /**
+   * Mark every tile touched by a rectangle of pixels as stale, its error is no
+   * longer known until the map is filled again
+   * 
+   * @param rect x, y, width and height of the pixels that changed
+   */
+  public void markChanged(int[] rect)
+  {
+    int[] tiles = tiles(rect);
+    for (int row = tiles[1]; row < tiles[3]; row++)
+    {
+      stale.set(row * columns + tiles[0], row * columns + Math.max(tiles[2], tiles[0]));
+    }
+  }
+
+  /**
+   * Check if the error of every tile touched by a rectangle is still known
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @return true if no tile under the rectangle changed since the map was
+   *         filled
+   */
+  public boolean isKnown(int[] rect)
+  {
+    int[] tiles = tiles(rect);
+    for (int row = tiles[1]; row < tiles[3]; row++)
+    {
+      int next = stale.nextSetBit(row * columns + tiles[0]);
+      if (next != -1 && next < row * columns + tiles[2]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Sum the errors of every tile touched by a rectangle of pixels
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @return error under the rectangle
+   */
+  public long rectError(int[] rect)
+  {
+    return rectSum(sums, rect);
+  }
+
+  /**
+   * Sum the absolute channel differences of every tile touched by a rectangle
+   * of pixels
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @return sum of absolute differences under the rectangle
+   */
+  public long rectAbsoluteError(int[] rect)
+  {
+    return rectSum(absoluteSums, rect);
+  }
+
+  /**
+   * Sum the tiles touched by a rectangle of pixels from a summed area table
+   */
+  private long rectSum(long[] table, int[] rect)
+  {
+    int[] tiles = tiles(rect);
+    if (tiles[0] >= tiles[2] || tiles[1] >= tiles[3]) return 0;
+    int stride = columns + 1;
+    return table[tiles[3] * stride + tiles[2]] - table[tiles[1] * stride + tiles[2]]
+        - table[tiles[3] * stride + tiles[0]] + table[tiles[1] * stride + tiles[0]];
+  }
+
+  /**
+   * Find the tiles touched by a rectangle of pixels
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @return first column, first row, column and row past the last
+   */
+  private int[] tiles(int[] rect)
+  {
+    int left = Math.max(rect[0] / tileSize, 0);
+    int top = Math.max(rect[1] / tileSize, 0);
+    int right = Math.min((rect[0] + rect[2]) / tileSize + 1, columns);
+    int bottom = Math.min((rect[1] + rect[3]) / tileSize + 1, rows);
+    return new int[] { left, top, right, bottom };
+  }
+}
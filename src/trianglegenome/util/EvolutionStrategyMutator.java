@@ -0,0 +1,128 @@
+package trianglegenome.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * (1 + lambda) evolution strategy over whole triangles
+ *
+ * Every step makes Constants.ES_OFFSPRING copies of one triangle and moves all
+ * 10 genes of each by a Gaussian step. The copies are scored concurrently on
+ * the canvases of the threads of the common pool, and the best one replaces
+ * the triangle if it beats it. Every copy draws its own step size around the
+ * current one, and the step size of the winner is kept
+ *
+ */
+public class EvolutionStrategyMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private GeneSelector selector;
+  private double sigma = Constants.ES_INITIAL_SIGMA;
+
+  /**
+   * Create a new evolution strategy mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the triangle to change, through any of its genes
+   */
+  public EvolutionStrategyMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+  }
+
+  /**
+   * Get the current step size
+   * 
+   * @return standard deviation of a gene move
+   */
+  public double getSigma()
+  {
+    return sigma;
+  }
+
+  /**
+   * Move one triangle to the best of a batch of offspring
+   * 
+   * @return true if an offspring was better than the triangle
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Whole triangle moves do not continue climbs
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    int index = selector.selectGene(genome) / 10;
+    Triangle parent = genome.getTriangles().get(index);
+    int lambda = Constants.ES_OFFSPRING;
+    Triangle[] offspring = new Triangle[lambda];
+    double[] sigmas = new double[lambda];
+    int[] rect = parent.getBoundingRect();
+    for (int i = 0; i < lambda; i++)
+    {
+      sigmas[i] = Math.min(Constants.ES_MAX_SIGMA, Math.max(Constants.ES_MIN_SIGMA,
+          sigma * Math.exp(Constants.ES_SIGMA_LEARNING_RATE * Constants.RANDOM.nextGaussian())));
+      offspring[i] = perturb(parent, sigmas[i]);
+      rect = Fitness.unionRect(rect, offspring[i].getBoundingRect());
+    }
+
+    // Every candidate is scored on the same region so their scores compare
+    int[] region = rect;
+    long parentFitness = fitCalc.findRectFitness(genome, region);
+    long[] scores = new long[lambda];
+    IntStream.range(0, lambda).parallel().forEach(i ->
+    {
+      List<Triangle> triangles = new ArrayList<>(genome.getTriangles());
+      triangles.set(index, offspring[i]);
+      scores[i] = fitCalc.findRectFitness(new Genome(triangles, genome.getWidth(), genome.getHeight()), region);
+    });
+
+    int best = 0;
+    for (int i = 1; i < lambda; i++)
+    {
+      if (scores[i] < scores[best]) best = i;
+    }
+    if (scores[best] >= parentFitness)
+    {
+      // A failed batch means the step overshoots
+      sigma = Math.max(Constants.ES_MIN_SIGMA, sigma * Constants.ES_FAILURE_SHRINK);
+      return false;
+    }
+
+    genome.getTriangles().set(index, offspring[best]);
+    genome.fitness += scores[best] - parentFitness;
+    genome.changed(index, region);
+    sigma = sigmas[best];
+    return true;
+  }
+
+  /**
+   * Copy a triangle with every gene moved by a rounded Gaussian step, kept in
+   * range
+   * 
+   * @param triangle triangle to copy
+   * @param sigma standard deviation of a move
+   * @return moved copy
+   */
+  private static Triangle perturb(Triangle triangle, double sigma)
+  {
+    Triangle copy = triangle.deepCopy();
+    for (int n = 0; n < 10; n++)
+    {
+      int delta = (int) Math.round(Constants.RANDOM.nextGaussian() * sigma);
+      while (delta != 0 && !copy.canChange(n, delta))
+      {
+        delta /= 2;
+      }
+      if (delta != 0) copy.changeGene(n, delta);
+    }
+    return copy;
+  }
+}
@@ -1,23 +1,36 @@
 package trianglegenome.util;
 
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 import trianglegenome.Constants;
 import trianglegenome.Genome;
 
 /**
  * Fitness utility with different calculators for a set image
+ * 
+ * Thread safe, every evaluation draws on a canvas taken from a pool of idle
+ * canvases so one calculator can be shared by all tribes. The pool holds as
+ * many canvases as evaluations ever ran at once and is released when the
+ * calculator is closed
  *
  */
-public class Fitness
+public class Fitness implements AutoCloseable
 {
-  private int[] targetPixels;
-  private WritableRaster targetRaster;
+  private final Target target;
+  private final ByteBuffer targetPixels;
   private FitnessType type;
-  private BufferedImage imageBuf;
-  private BufferedImage targetImage;
+  private final ConcurrentLinkedQueue<Canvas> idleCanvases = new ConcurrentLinkedQueue<>();
+  private final LongAdder evaluations = new LongAdder();
+  private final ThreadLocal<long[]> threadEvaluations = ThreadLocal.withInitial(() -> new long[1]);
+  private final LongAdder skippedEvaluations = new LongAdder();
+  private final LongAdder screenedEvaluations = new LongAdder();
+  private final LongAdder falseRejections = new LongAdder();
+  private final LongAdder auditedRejections = new LongAdder();
   int width;
   int height;
 
@@ -33,76 +46,167 @@ public class Fitness
   /**
    * Create a new fitness calculator
    * 
-   * @param target target image
-   * @param imageBuf an image buffer to use
+   * @param target target image, preprocessed into a new shared target
    * @param type type of fitness calculation
    */
-  public Fitness(BufferedImage target, BufferedImage imageBuf, FitnessType type)
+  public Fitness(BufferedImage target, FitnessType type)
+  {
+    this(new Target(target), type);
+  }
+
+  /**
+   * Create a new fitness calculator for a shared target
+   * 
+   * @param target preprocessed target
+   * @param type type of fitness calculation
+   */
+  public Fitness(Target target, FitnessType type)
   {
     this.type = type;
-    this.imageBuf = imageBuf;
+    this.target = target;
     this.width = target.getWidth();
     this.height = target.getHeight();
-    targetPixels = target.getRaster().getPixels(0, 0, width, height, targetPixels);
-    targetRaster = target.getRaster();
-    this.targetImage = new BufferedImage(width, height, Constants.BUF_IMG_TYPE);
-    Graphics g = this.targetImage.createGraphics();
-    g.drawImage(target, 0, 0, null);
+    this.targetPixels = target.getPixels();
+  }
 
+  /**
+   * Take an idle canvas, or create one if every canvas is in use
+   * 
+   * @return canvas only the caller draws on until it is given back
+   */
+  private Canvas takeCanvas()
+  {
+    Canvas canvas = idleCanvases.poll();
+    return canvas != null ? canvas : new Canvas(width, height);
   }
 
   /**
-   * BROKEN:
+   * Give a canvas back to the pool once the caller is done with it
    * 
-   * @TODO FIX
+   * @param canvas canvas from takeCanvas
+   */
+  private void giveBack(Canvas canvas)
+  {
+    idleCanvases.offer(canvas);
+  }
+
+  /**
+   * Get the shared target
+   * 
+   * @return target
+   */
+  public Target getTarget()
+  {
+    return target;
+  }
+
+  /**
+   * Get the type of fitness calculation
+   * 
+   * @return fitness type
+   */
+  public FitnessType getType()
+  {
+    return type;
+  }
+
+  /**
+   * Find fitness for bounding rectangle of a gene
    * 
-   *       Find fitness for bounding rectangle of a gene
    * @param genome genome
    * @param gene gene for bounding rect
    * @return fitness of bounding rectangle on image
    */
   public long findRectFitness(Genome genome, int gene)
   {
+    return findRectFitness(genome, genome.getGeneBoundingRect(gene));
+  }
+
+  /**
+   * Find the fitness of a rectangle of a genome, only the rectangle is drawn
+   * 
+   * The full fitness changes by exactly the change in rectangle fitness when a
+   * change only touches pixels inside the rectangle
+   * 
+   * @param genome genome
+   * @param rect x, y, width and height of the rectangle
+   * @return fitness of the rectangle on image
+   */
+  public long findRectFitness(Genome genome, int[] rect)
+  {
+    evaluations.increment();
+    threadEvaluations.get()[0]++;
     long fitness = 0;
-    genome.drawImage(imageBuf);
-    int[] rect = genome.getGeneBoundingRect(gene);
-    switch (type)
+    int[] clipped = clipRect(rect);
+    Canvas canvas = takeCanvas();
+    try
     {
-      case MANHATTAN:
-        fitness = rectManhattanDistance(imageBuf, rect);
-        break;
-      case DISTANCE_SQUARED:
-        fitness = rectDistanceSquared(imageBuf, rect);
-        break;
-      default:
-        break;
+      canvas.drawRegion(genome, genome.getTriangles().size(), clipped);
+      switch (type)
+      {
+        case MANHATTAN:
+          fitness = rectManhattanDistance(canvas.getPixels(), clipped);
+          break;
+        case DISTANCE_SQUARED:
+          fitness = rectDistanceSquared(canvas.getPixels(), clipped);
+          break;
+        default:
+          break;
+      }
+    }
+    finally
+    {
+      giveBack(canvas);
     }
     return fitness;
   }
 
+  /**
+   * Clip a rectangle to the target
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @return rectangle inside the target, may be empty
+   */
+  private int[] clipRect(int[] rect)
+  {
+    int left = Math.max(rect[0], 0);
+    int top = Math.max(rect[1], 0);
+    int right = Math.min(rect[0] + rect[2], width);
+    int bottom = Math.min(rect[1] + rect[3], height);
+    return new int[] { left, top, Math.max(right - left, 0), Math.max(bottom - top, 0) };
+  }
+
+  /**
+   * Smallest rectangle holding two rectangles
+   * 
+   * @param a x, y, width and height of the first rectangle
+   * @param b x, y, width and height of the second rectangle
+   * @return x, y, width and height of the union
+   */
+  public static int[] unionRect(int[] a, int[] b)
+  {
+    int left = Math.min(a[0], b[0]);
+    int top = Math.min(a[1], b[1]);
+    int right = Math.max(a[0] + a[2], b[0] + b[2]);
+    int bottom = Math.max(a[1] + a[3], b[1] + b[3]);
+    return new int[] { left, top, right - left, bottom - top };
+  }
+
   /**
    * Find manhattan fitness on bounding rectangle
    * 
-   * @param imageBuf image buffer to get fitness from
-   * @param rect rectangle to get fitness from
+   * @param pixels canvas pixels to get fitness from
+   * @param rect rectangle to get fitness from, inside the target
    * @return fitness
    */
-  private long rectManhattanDistance(BufferedImage imageBuf, int[] rect)
+  private long rectManhattanDistance(ByteBuffer pixels, int[] rect)
   {
-    WritableRaster imageRaster = imageBuf.getRaster();
     long distance = 0;
-    int[] pixels = new int[3];
-    int[] targetPixels = new int[3];
-    for (int i = rect[0]; i <= rect[2]; i++)
+    for (int y = rect[1]; y < rect[1] + rect[3]; y++)
     {
-      for (int j = rect[1]; j <= rect[3]; j++)
+      for (int i = (y * width + rect[0]) * 3, last = (y * width + rect[0] + rect[2]) * 3; i < last; i++)
       {
-        pixels = imageRaster.getPixel(i, j, pixels);
-        targetPixels = targetRaster.getPixel(i, j, targetPixels);
-        for (int b = 0; b < 3; b++)
-        {
-          distance += Math.abs(pixels[b] - targetPixels[b]);
-        }
+        distance += Math.abs((pixels.get(i) & 0xff) - (targetPixels.get(i) & 0xff));
       }
     }
     return distance;
@@ -111,84 +215,269 @@ public class Fitness
   /**
    * Find distance squared fitness on bounding rectangle
    * 
-   * @param imageBuf image buffer to get fitness from
-   * @param rect rectangle to get fitness from
+   * @param pixels canvas pixels to get fitness from
+   * @param rect rectangle to get fitness from, inside the target
    * @return fitness
    */
-  private long rectDistanceSquared(BufferedImage imageBuf, int[] rect)
+  private long rectDistanceSquared(ByteBuffer pixels, int[] rect)
   {
-    WritableRaster imageRaster = imageBuf.getRaster();
     long distance = 0;
     int subVal = 0;
-    int[] pixels = new int[3];
-    int[] targetPixels = new int[3];
-    for (int i = rect[0]; i <= rect[2]; i++)
+    for (int y = rect[1]; y < rect[1] + rect[3]; y++)
     {
-      for (int j = rect[1]; j <= rect[3]; j++)
+      for (int i = (y * width + rect[0]) * 3, last = (y * width + rect[0] + rect[2]) * 3; i < last; i++)
       {
-        pixels = imageRaster.getPixel(i, j, pixels);
-        targetPixels = targetRaster.getPixel(i, j, targetPixels);
-        for (int b = 0; b < 3; b++)
-        {
-          subVal = pixels[b] - targetPixels[b];
-          distance += subVal * subVal;
-        }
+        subVal = (pixels.get(i) & 0xff) - (targetPixels.get(i) & 0xff);
+        distance += subVal * subVal;
       }
     }
     return distance;
   }
 
   /**
-   * Find full fitness of a genome
+   * Find full fitness of a genome, the error map of the genome is filled on
+   * the way
    * 
    * @param genome genome
    * @return fitness
    */
   public long findFitness(Genome genome)
   {
-    // long start = System.nanoTime();
-    long fitness = 0;
-    genome.drawImage(imageBuf);
-    switch (type)
+    evaluations.increment();
+    threadEvaluations.get()[0]++;
+    ErrorMap map = genome.errorMap;
+    if (map == null || !map.fits(width, height, Constants.ERROR_TILE_SIZE))
     {
-      case MANHATTAN:
-        fitness = manhattanDistance(imageBuf);
-        break;
-      case DISTANCE_SQUARED:
-        fitness = distanceSquared(imageBuf);
-        break;
-      default:
-        break;
+      map = new ErrorMap(width, height, Constants.ERROR_TILE_SIZE);
+      genome.errorMap = map;
+    }
+    Canvas canvas = takeCanvas();
+    try
+    {
+      canvas.drawGenome(genome, genome.getTriangles().size());
+      return tiledDistance(canvas.getPixels(), map);
+    }
+    finally
+    {
+      giveBack(canvas);
     }
-    // long end = System.nanoTime();
-    // System.out.println("Fitness time: " + (end - start));
-    return fitness;
   }
 
   /**
-   * Find the manhattan distance from target
+   * Find the distance from target tile by tile
    * 
-   * @param image image to calculate fitness of
+   * @param pixels packed BGR pixels to calculate fitness of
+   * @param map error map to fill
    * @return fitness
    */
-  public int manhattanDistance(BufferedImage image)
+  private long tiledDistance(ByteBuffer pixels, ErrorMap map)
   {
-    WritableRaster imageRaster = imageBuf.getRaster();
-    int distance = 0;
-    int[] pixels = new int[3];
-    int[] targetPixels = new int[3];
-    for (int i = 0; i < width; i++)
+    boolean squared = type == FitnessType.DISTANCE_SQUARED;
+    int tileSize = map.getTileSize();
+    long distance = 0;
+    int subVal = 0;
+    map.clear();
+    for (int y = 0; y < height; y++)
     {
-      for (int j = 0; j < height; j++)
+      for (int column = 0; column < map.getColumns(); column++)
       {
-        pixels = imageRaster.getPixel(i, j, pixels);
-        targetPixels = targetRaster.getPixel(i, j, targetPixels);
-        for (int b = 0; b < 3; b++)
+        long error = 0;
+        long absoluteError = 0;
+        int start = (y * width + column * tileSize) * 3;
+        int end = (y * width + Math.min((column + 1) * tileSize, width)) * 3;
+        for (int i = start; i < end; i++)
         {
-          distance += Math.abs(pixels[b] - targetPixels[b]);
+          subVal = (pixels.get(i) & 0xff) - (targetPixels.get(i) & 0xff);
+          error += squared ? subVal * subVal : Math.abs(subVal);
+          absoluteError += Math.abs(subVal);
         }
+        map.add(column, y / tileSize, error, absoluteError);
+        distance += error;
       }
     }
+    map.finish();
+    return distance;
+  }
+
+  /**
+   * Find an upper bound on how much a move can lower the fitness, from the
+   * error map of the genome
+   * 
+   * A channel off by e that moves by at most d gains at most e * e and at most
+   * 2 * d * |e| under distance squared, and at most |e| and d under
+   * manhattan. Summed over the tiles under the region this bounds the gain of
+   * the move without drawing it
+   * 
+   * @param genome genome the move is made on
+   * @param rect x, y, width and height of every pixel the move can change
+   * @param change largest change of a channel of any of those pixels
+   * @return largest possible fall of fitness, Long.MAX_VALUE if the error
+   *         under the region is not known
+   */
+  public long gainBound(Genome genome, int[] rect, int change)
+  {
+    ErrorMap map = genome.errorMap;
+    if (map == null || !map.fits(width, height, Constants.ERROR_TILE_SIZE) || !map.isKnown(rect))
+    {
+      return Long.MAX_VALUE;
+    }
+    if (type == FitnessType.DISTANCE_SQUARED)
+    {
+      return Math.min(map.rectError(rect), 2L * change * map.rectAbsoluteError(rect));
+    }
+    int[] clipped = clipRect(rect);
+    return Math.min(map.rectAbsoluteError(rect), 3L * change * clipped[2] * clipped[3]);
+  }
+
+  /**
+   * Find the largest change of a channel of any pixel when a gene changes
+   * 
+   * A pixel a triangle starts or stops covering moves by at most its alpha,
+   * a change of color by the change times alpha / 255 rounded up, and a change
+   * of alpha by the change. Triangles drawn over a pixel never make its change
+   * larger
+   * 
+   * @param genome genome holding the gene
+   * @param gene gene to change
+   * @param delta change of the gene
+   * @return largest change of a channel
+   */
+  public static int pixelChange(Genome genome, int gene, int delta)
+  {
+    int alpha = genome.getGene(gene / 10 * 10 + 9);
+    int index = gene % 10;
+    if (index < 6) return alpha;
+    if (index < 9) return (Math.abs(delta) * alpha + 254) / 255;
+    return Math.abs(delta);
+  }
+
+  /**
+   * Count an evaluation a move's gain bound made unnecessary
+   */
+  public void screenEvaluation()
+  {
+    screenedEvaluations.increment();
+  }
+
+  /**
+   * Get how many evaluations gain bounds made unnecessary
+   * 
+   * @return number of screened out evaluations
+   */
+  public long getScreenedEvaluations()
+  {
+    return screenedEvaluations.sum();
+  }
+
+  /**
+   * Count a screened out move that was scored anyway to check its bound
+   * 
+   * @param gainedMore true if the move gained more than its bound
+   */
+  public void auditRejection(boolean gainedMore)
+  {
+    auditedRejections.increment();
+    if (gainedMore) falseRejections.increment();
+  }
+
+  /**
+   * Get how many checked screened out moves gained more than their bound
+   * 
+   * @return number of false rejections
+   */
+  public long getFalseRejections()
+  {
+    return falseRejections.sum();
+  }
+
+  /**
+   * Get how many screened out moves were scored anyway to check their bound
+   * 
+   * @return number of checked rejections
+   */
+  public long getAuditedRejections()
+  {
+    return auditedRejections.sum();
+  }
+
+  /**
+   * Get how many genomes or regions have been evaluated
+   * 
+   * @return number of full and region evaluations
+   */
+  public long getEvaluations()
+  {
+    return evaluations.sum();
+  }
+
+  /**
+   * Get how many genomes or regions the calling thread has evaluated, a
+   * thread that runs a single tribe counts the evaluations of the tribe
+   * 
+   * @return number of full and region evaluations of the calling thread
+   */
+  public long getThreadEvaluations()
+  {
+    return threadEvaluations.get()[0];
+  }
+
+  /**
+   * Count an evaluation a mutator did not need to make
+   */
+  public void skipEvaluation()
+  {
+    skippedEvaluations.increment();
+  }
+
+  /**
+   * Get how many evaluations mutators did not need to make
+   * 
+   * @return number of skipped evaluations
+   */
+  public long getSkippedEvaluations()
+  {
+    return skippedEvaluations.sum();
+  }
+
+  /**
+   * Find and set the fitness of every genome, genomes are evaluated
+   * concurrently but counted for the calling thread
+   * 
+   * @param genomes genomes to evaluate
+   */
+  public void evaluateAll(List<Genome> genomes)
+  {
+    long[] count = threadEvaluations.get();
+    long before = count[0];
+    genomes.parallelStream().forEach(g -> g.setFitness(findFitness(g)));
+    // The calling thread may have scored some of the genomes itself
+    count[0] = before + genomes.size();
+  }
+
+  /**
+   * Find the manhattan distance from target
+   * 
+   * @param image image to calculate fitness of
+   * @return fitness
+   */
+  public int manhattanDistance(BufferedImage image)
+  {
+    return (int) manhattanDistance(pixelBytes(image));
+  }
+
+  /**
+   * Find the manhattan distance from target
+   * 
+   * @param pixels packed BGR pixels to calculate fitness of
+   * @return fitness
+   */
+  private long manhattanDistance(ByteBuffer pixels)
+  {
+    long distance = 0;
+    for (int i = 0, size = targetPixels.capacity(); i < size; i++)
+    {
+      distance += Math.abs((pixels.get(i) & 0xff) - (targetPixels.get(i) & 0xff));
+    }
     return distance;
   }
 
@@ -200,24 +489,54 @@ public class Fitness
    */
   public long distanceSquared(BufferedImage image)
   {
-    WritableRaster imageRaster = imageBuf.getRaster();
+    return distanceSquared(pixelBytes(image));
+  }
+
+  /**
+   * Find the distance squared distance from target
+   * 
+   * @param pixels packed BGR pixels to calculate fitness of
+   * @return fitness
+   */
+  private long distanceSquared(ByteBuffer pixels)
+  {
     long distance = 0;
     int subVal = 0;
-    int[] pixels = new int[3];
-    int[] targetPixels = new int[3];
-    for (int i = 0; i < width; i++)
+    for (int i = 0, size = targetPixels.capacity(); i < size; i++)
     {
-      for (int j = 0; j < height; j++)
-      {
-        pixels = imageRaster.getPixel(i, j, pixels);
-        targetPixels = targetRaster.getPixel(i, j, targetPixels);
-        for (int b = 0; b < 3; b++)
-        {
-          subVal = pixels[b] - targetPixels[b];
-          distance += (subVal * subVal);
-        }
-      }
+      subVal = (pixels.get(i) & 0xff) - (targetPixels.get(i) & 0xff);
+      distance += (subVal * subVal);
     }
     return distance;
   }
+
+  /**
+   * Get the packed BGR pixels of an image in the project format, other images
+   * are converted first
+   * 
+   * @param image image to read
+   * @return pixels laid out like the target pixels
+   */
+  private ByteBuffer pixelBytes(BufferedImage image)
+  {
+    if (image.getType() != Constants.BUF_IMG_TYPE)
+    {
+      return ByteBuffer.wrap(Target.toBytes(image));
+    }
+    return ByteBuffer.wrap(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+  }
+
+  /**
+   * Release every canvas made for this calculator, should only be called once
+   * no thread is using it
+   */
+  @Override
+  public void close()
+  {
+    Canvas canvas;
+    while ((canvas = idleCanvases.poll()) != null)
+    {
+      canvas.close();
+    }
+  }
 }
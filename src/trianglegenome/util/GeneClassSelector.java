@@ -0,0 +1,64 @@
+package trianglegenome.util;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+
+/**
+ * Chooses a triangle with another selector and then a gene of one class
+ *
+ */
+public class GeneClassSelector implements GeneSelector
+{
+  /**
+   * Classes of genes in a triangle
+   */
+  public enum GeneClass
+  {
+    VERTEX_X(0, 2, 4),
+    VERTEX_Y(1, 3, 5),
+    COLOR(6, 7, 8),
+    ALPHA(9);
+
+    private final int[] genes;
+
+    GeneClass(int... genes)
+    {
+      this.genes = genes;
+    }
+
+    /**
+     * Get the genes of a triangle in this class
+     * 
+     * @return gene numbers from 0 to 9
+     */
+    public int[] getGenes()
+    {
+      return genes.clone();
+    }
+  }
+
+  private GeneSelector triangleSelector;
+  private GeneClass geneClass;
+
+  /**
+   * Create a new gene class selector
+   * 
+   * @param triangleSelector selector whose choice of triangle is kept
+   * @param geneClass class of the genes to choose
+   */
+  public GeneClassSelector(GeneSelector triangleSelector, GeneClass geneClass)
+  {
+    this.triangleSelector = triangleSelector;
+    this.geneClass = geneClass;
+  }
+
+  /**
+   * Choose a gene of the class in a triangle chosen by the other selector
+   */
+  @Override
+  public int selectGene(Genome genome)
+  {
+    int triangle = triangleSelector.selectGene(genome) / 10;
+    return triangle * 10 + geneClass.genes[Constants.RANDOM.nextInt(geneClass.genes.length)];
+  }
+}
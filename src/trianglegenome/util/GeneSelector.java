@@ -0,0 +1,18 @@
+package trianglegenome.util;
+
+import trianglegenome.Genome;
+
+/**
+ * Interface to describe how mutators choose the gene to change
+ *
+ */
+public interface GeneSelector
+{
+  /**
+   * Choose a gene of a genome
+   * 
+   * @param genome genome to choose from
+   * @return gene number
+   */
+  public int selectGene(Genome genome);
+}
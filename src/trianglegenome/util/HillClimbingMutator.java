@@ -12,15 +12,28 @@ import trianglegenome.Genome;
 public class HillClimbingMutator implements Mutator
 {
   private Fitness fitCalc;
+  private GeneSelector selector;
 
   /**
-   * Create a new hill climbing mutator
+   * Create a new hill climbing mutator that chooses genes uniformly
    * 
    * @param fitCalc fitness calculator to use
    */
   public HillClimbingMutator(Fitness fitCalc)
+  {
+    this(fitCalc, new UniformGeneSelector());
+  }
+
+  /**
+   * Create a new hill climbing mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the gene of a new climb
+   */
+  public HillClimbingMutator(Fitness fitCalc, GeneSelector selector)
   {
     this.fitCalc = fitCalc;
+    this.selector = selector;
   }
 
   /**
@@ -58,11 +71,19 @@ public class HillClimbingMutator implements Mutator
     if (newFitness < genome.getFitness())
     {
       genome.setFitness(newFitness);
+      // The error map was just filled for this genome, only the tabu list is stale
+      genome.tabu.changed(genome, genome.previousGene / 10,
+          genome.getGeneChangeRect(genome.previousGene, -genome.previousDelta));
       genome.successfulClimbs++;
       return true;
     }
     else
     {
+      // The error map was filled for the move that is undone
+      if (genome.errorMap != null)
+      {
+        genome.errorMap.markChanged(genome.getGeneChangeRect(genome.previousGene, -genome.previousDelta));
+      }
       resetClimb(genome);
       return false;
     }
@@ -85,6 +106,7 @@ public class HillClimbingMutator implements Mutator
       }
       else
       {
+        genome.tabu.reject(genome.previousGene, genome.previousDelta);
         genome.previousGene = -1;
         genome.previousDelta = 0;
         genome.successfulClimbs = 0;
@@ -97,12 +119,21 @@ public class HillClimbingMutator implements Mutator
    * 
    * @param genome
    */
-  private static void randomClimb(Genome genome)
+  private void randomClimb(Genome genome)
   {
-    int randGene = Constants.RANDOM.nextInt(Constants.GENE_COUNT);
-
+    int randGene = selector.selectGene(genome);
     int delta = Constants.RANDOM.nextInt(2);
     if (delta == 0) delta = -1;
+
+    // Rejected moves are only worth trying once their region changed
+    for (int tries = 0; genome.tabu.isTabu(randGene, delta); tries++)
+    {
+      fitCalc.skipEvaluation();
+      if (tries == Constants.TABU_RETRIES) return;
+      randGene = selector.selectGene(genome);
+      delta = Constants.RANDOM.nextInt(2);
+      if (delta == 0) delta = -1;
+    }
     if (genome.canChange(randGene, delta))
     {
       genome.changeGene(randGene, delta);
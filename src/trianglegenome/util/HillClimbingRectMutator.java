@@ -4,25 +4,39 @@ import trianglegenome.Constants;
 import trianglegenome.Genome;
 
 /**
- * THIS DOES NOT WORK PROPERLY
+ * Hill climbing that only redraws and scores the region a move can touch
  * 
- * Basically a copy of HillClimbingMutator
+ * The region is the union of the bounding rectangles of the changed triangle
+ * before and after the move. Pixels outside it do not change, so the genome
+ * fitness is kept exact by adding the change in region fitness
  *
- * Try to do hill climbing while only using bounding rectangle for fitness
- * comparison
  */
 public class HillClimbingRectMutator implements Mutator
 {
   Fitness fitCalc;
+  private GeneSelector selector;
+  private int[] dirtyRect;
 
   /**
-   * Create a new hill climbing mutator
+   * Create a new hill climbing mutator that chooses genes uniformly
    * 
    * @param fitCalc fitness calculator to use
    */
   public HillClimbingRectMutator(Fitness fitCalc)
+  {
+    this(fitCalc, new UniformGeneSelector());
+  }
+
+  /**
+   * Create a new hill climbing mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the gene of a new climb
+   */
+  public HillClimbingRectMutator(Fitness fitCalc, GeneSelector selector)
   {
     this.fitCalc = fitCalc;
+    this.selector = selector;
   }
 
   /**
@@ -54,11 +68,12 @@ public class HillClimbingRectMutator implements Mutator
   {
     if (genome.previousGene == -1) return false;
 
-    long newFitness = fitCalc.findRectFitness(genome, genome.previousGene);
+    long newFitness = fitCalc.findRectFitness(genome, dirtyRect);
     if (newFitness < genome.rectFitness)
     {
-      // System.out.println("new " + newFitness + " " + genome.rectFitness);
-      genome.fitness = fitCalc.findFitness(genome);
+      genome.fitness += newFitness - genome.rectFitness;
+      genome.rectFitness = newFitness;
+      genome.changed(genome.previousGene / 10, dirtyRect);
       genome.successfulClimbs++;
       return true;
     }
@@ -86,6 +101,7 @@ public class HillClimbingRectMutator implements Mutator
       }
       else
       {
+        genome.tabu.reject(genome.previousGene, genome.previousDelta);
         genome.previousGene = -1;
         genome.previousDelta = 0;
         genome.successfulClimbs = 0;
@@ -100,26 +116,71 @@ public class HillClimbingRectMutator implements Mutator
    */
   private void randomClimb(Genome genome)
   {
-    int randGene = Constants.RANDOM.nextInt(Constants.GENE_COUNT);
-
+    int randGene = selector.selectGene(genome);
     int delta = Constants.RANDOM.nextInt(2);
     if (delta == 0) delta = -1;
+
+    // Rejected moves are only worth trying once their region changed
+    for (int tries = 0; genome.tabu.isTabu(randGene, delta); tries++)
+    {
+      fitCalc.skipEvaluation();
+      if (tries == Constants.TABU_RETRIES) return;
+      randGene = selector.selectGene(genome);
+      delta = Constants.RANDOM.nextInt(2);
+      if (delta == 0) delta = -1;
+    }
     if (genome.canChange(randGene, delta))
     {
-      genome.rectFitness = fitCalc.findRectFitness(genome, randGene);
-      genome.changeGene(randGene, delta);
+      if (screened(genome, randGene, delta))
+      {
+        genome.tabu.reject(randGene, delta);
+        return;
+      }
+      changeGene(genome, randGene, delta);
       genome.previousDelta = delta;
       genome.previousGene = randGene;
     }
   }
 
+  /**
+   * Check if the gain of a move is bounded by Constants.SCREEN_NEGLIGIBLE_GAIN
+   * from the error map, so it can be rejected without drawing it
+   * 
+   * @param genome genome the move is made on
+   * @param gene gene to change
+   * @param delta amount to change the gene by
+   * @return true if the move is not worth scoring
+   */
+  private boolean screened(Genome genome, int gene, int delta)
+  {
+    int[] rect = genome.getGeneChangeRect(gene, delta);
+    long bound = fitCalc.gainBound(genome, rect, Fitness.pixelChange(genome, gene, delta));
+    if (bound > Constants.SCREEN_NEGLIGIBLE_GAIN) return false;
+    fitCalc.screenEvaluation();
+    if (Constants.DEBUG_SCREEN || Constants.RANDOM.nextDouble() < Constants.SCREEN_AUDIT_SHARE)
+    {
+      // Score the move anyway to check the bound holds
+      long before = fitCalc.findRectFitness(genome, rect);
+      genome.changeGene(gene, delta);
+      long gain = before - fitCalc.findRectFitness(genome, rect);
+      genome.changeGene(gene, -delta);
+      fitCalc.auditRejection(gain > bound);
+      if (gain > bound)
+      {
+        System.out.println("Screen rejected gene " + gene + " by " + delta + " gaining " + gain + " over bound "
+            + bound);
+      }
+    }
+    return true;
+  }
+
   /**
    * Continue a climb using the previous delta
    * 
    * @param genome genome to continue
    * @return true if continued, false if could not continue
    */
-  private static boolean continueClimb(Genome genome)
+  private boolean continueClimb(Genome genome)
   {
     if (genome.successfulClimbs > 1)
     {
@@ -132,7 +193,7 @@ public class HillClimbingRectMutator implements Mutator
     if (genome.canChange(genome.previousGene, genome.previousDelta))
     {
       genome.oldGeneValue = genome.getGene(genome.previousGene);
-      genome.changeGene(genome.previousGene, genome.previousDelta);
+      changeGene(genome, genome.previousGene, genome.previousDelta);
       return true;
     }
     else if (Math.abs(genome.previousDelta) > 1)
@@ -149,6 +210,29 @@ public class HillClimbingRectMutator implements Mutator
     return false;
   }
 
+  /**
+   * Change a gene and remember the region it touched together with the fitness
+   * of that region before the change
+   * 
+   * @param genome genome to change
+   * @param gene gene to change
+   * @param delta amount to change the gene by
+   */
+  private void changeGene(Genome genome, int gene, int delta)
+  {
+    dirtyRect = genome.getGeneChangeRect(gene, delta);
+
+    // Color changes keep the coverage, so while climbing the same color the
+    // region fitness from the last step still holds
+    if (gene % 10 >= 6 && gene == genome.previousGene)
+    {
+      genome.changeGene(gene, delta);
+      return;
+    }
+    genome.rectFitness = fitCalc.findRectFitness(genome, dirtyRect);
+    genome.changeGene(gene, delta);
+  }
+
   /**
    * Choose a random valid value
    * 
@@ -0,0 +1,139 @@
+package trianglegenome.util;
+
+import java.util.Arrays;
+
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * What the rest of a genome does to the pixels of one layer inside a rectangle
+ *
+ * Below holds the exact composite of the triangles under the layer. The
+ * triangles above the layer blend each pixel towards their colors, which is an
+ * affine map, so a pixel p drawn by the layer ends up as scale * p + offset.
+ * Rounding in the blend is ignored for the map, it is only used to predict
+ *
+ */
+public class LayerComposite
+{
+  private final int[] rect;
+  private final int[] below;
+  private final double[] scale;
+  private final double[] offset;
+
+  /**
+   * Build the composites for a layer of a genome
+   * 
+   * @param genome genome to look at
+   * @param layer index of the triangle the composites are for
+   * @param rect x, y, width and height of the region, clipped to the genome
+   */
+  public LayerComposite(Genome genome, int layer, int[] rect)
+  {
+    int left = Math.max(rect[0], 0);
+    int top = Math.max(rect[1], 0);
+    int right = Math.min(rect[0] + rect[2], genome.getWidth());
+    int bottom = Math.min(rect[1] + rect[3], genome.getHeight());
+    this.rect = new int[] { left, top, Math.max(right - left, 0), Math.max(bottom - top, 0) };
+    int size = this.rect[2] * this.rect[3];
+    below = new int[size * 3];
+    scale = new double[size];
+    offset = new double[size * 3];
+    Arrays.fill(below, 0xff);
+    Arrays.fill(scale, 1);
+
+    for (int i = 0; i < genome.getTriangles().size(); i++)
+    {
+      if (i == layer) continue;
+      Triangle triangle = genome.getTriangles().get(i);
+      int[] spans = triangle.getSpans();
+      int[] colors = triangle.getColors();
+      int alpha = colors[3];
+      int first = Math.max(spans[0], top);
+      int last = Math.min(spans[0] + spans[1], bottom);
+      for (int y = first; y < last; y++)
+      {
+        int index = 2 + (y - spans[0]) * 2;
+        int start = Math.max(spans[index], left);
+        int end = Math.min(spans[index + 1], right);
+        for (int x = start; x < end; x++)
+        {
+          int p = (y - top) * this.rect[2] + x - left;
+          if (i < layer)
+          {
+            // Same blend as the canvas, in byte order
+            for (int b = 0; b < 3; b++)
+            {
+              below[p * 3 + b] = Canvas.blend(colors[2 - b] * alpha, (byte) below[p * 3 + b], 255 - alpha) & 0xff;
+            }
+          }
+          else
+          {
+            double keep = (255 - alpha) / 255.0;
+            scale[p] *= keep;
+            for (int b = 0; b < 3; b++)
+            {
+              offset[p * 3 + b] = offset[p * 3 + b] * keep + colors[2 - b] * alpha / 255.0;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the region the composites cover
+   * 
+   * @return x, y, width and height of the region
+   */
+  public int[] getRect()
+  {
+    return rect;
+  }
+
+  /**
+   * Get a pixel of the composite below the layer
+   * 
+   * @param x column in the image
+   * @param y row in the image
+   * @param band channel in byte order, 0 blue, 1 green, 2 red
+   * @return channel value
+   */
+  public int getBelow(int x, int y, int band)
+  {
+    return below[index(x, y) * 3 + band];
+  }
+
+  /**
+   * Get how much of a pixel drawn by the layer survives the triangles above
+   * 
+   * @param x column in the image
+   * @param y row in the image
+   * @return scale of the affine map
+   */
+  public double getScale(int x, int y)
+  {
+    return scale[index(x, y)];
+  }
+
+  /**
+   * Get what the triangles above add to a pixel
+   * 
+   * @param x column in the image
+   * @param y row in the image
+   * @param band channel in byte order, 0 blue, 1 green, 2 red
+   * @return offset of the affine map
+   */
+  public double getOffset(int x, int y, int band)
+  {
+    return offset[index(x, y) * 3 + band];
+  }
+
+  /**
+   * Index of a pixel inside the region
+   */
+  private int index(int x, int y)
+  {
+    return (y - rect[1]) * rect[2] + x - rect[0];
+  }
+}
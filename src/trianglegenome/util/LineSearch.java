@@ -0,0 +1,199 @@
+package trianglegenome.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+
+/**
+ * Finds the best value of one gene by bracketing and golden section search
+ *
+ * A search starts with a step of 1 in a direction. If that improves, the step
+ * grows by the golden ratio until the fitness gets worse or the gene runs out
+ * of range, and the bracket is then narrowed by golden section down to single
+ * values. Fitness is scored on a region that holds every value tried so far,
+ * so every score is measured against the same starting point and a color gene
+ * costs one evaluation per value. The state of a search lives here, one object
+ * is reused by a mutator for all its searches
+ *
+ */
+public class LineSearch
+{
+  private static final double GOLDEN = (1 + Math.sqrt(5)) / 2;
+
+  private final Fitness fitCalc;
+  private Genome genome;
+  private int gene;
+  private int origin;
+  private int[] region;
+  private long base;
+  private final Map<Integer, Long> changes = new HashMap<>();
+  private long evaluations;
+  private long acceptedSteps;
+
+  /**
+   * Create a new line search
+   * 
+   * @param fitCalc fitness calculator to use
+   */
+  public LineSearch(Fitness fitCalc)
+  {
+    this.fitCalc = fitCalc;
+  }
+
+  /**
+   * Move a gene to the best value found in a direction, the gene is left as
+   * it was when a step of 1 does not improve
+   * 
+   * @param genome genome to change, its fitness is kept up to date
+   * @param gene gene to search
+   * @param direction 1 or -1
+   * @return change of fitness, 0 if the gene was left alone
+   */
+  public long search(Genome genome, int gene, int direction)
+  {
+    this.genome = genome;
+    this.gene = gene;
+    origin = genome.getGene(gene);
+    region = genome.getGeneChangeRect(gene, direction);
+    changes.clear();
+    base = evaluate(region);
+
+    int limit = direction > 0 ? maximum() : 0;
+    int previous = origin;
+    int current = origin + direction;
+    if (change(current) >= 0)
+    {
+      genome.setGene(gene, origin);
+      return 0;
+    }
+
+    // Grow the step until the fitness gets worse, giving a bracket
+    int next = current;
+    while (current != limit)
+    {
+      int step = (int) Math.round((current - previous) * GOLDEN);
+      next = direction > 0 ? Math.min(current + step, limit) : Math.max(current + step, limit);
+      if (change(next) >= change(current)) break;
+      previous = current;
+      current = next;
+    }
+
+    // Golden section inside the bracket, current is the best point so far
+    int low = Math.min(previous, next);
+    int high = Math.max(previous, next);
+    while (high - low > 2)
+    {
+      int probe = current - low > high - current ? current - (int) Math.round((current - low) / (GOLDEN + 1))
+          : current + (int) Math.round((high - current) / (GOLDEN + 1));
+      if (probe == current) probe += current - low > high - current ? -1 : 1;
+      if (change(probe) < change(current))
+      {
+        if (probe < current) high = current;
+        else low = current;
+        current = probe;
+      }
+      else
+      {
+        if (probe < current) low = probe;
+        else high = probe;
+      }
+    }
+    for (int value = low; value <= high; value++)
+    {
+      if (value != origin && change(value) < change(current)) current = value;
+    }
+
+    genome.setGene(gene, current);
+    long change = change(current);
+    genome.fitness += change;
+    acceptedSteps++;
+    return change;
+  }
+
+  /**
+   * Get the region scored by the last search
+   * 
+   * @return x, y, width and height of the region
+   */
+  public int[] getRegion()
+  {
+    return region;
+  }
+
+  /**
+   * Get the number of fitness evaluations per search that improved
+   * 
+   * @return evaluations over accepted steps, 0 before the first
+   */
+  public double getEvaluationsPerStep()
+  {
+    return acceptedSteps == 0 ? 0 : evaluations / (double) acceptedSteps;
+  }
+
+  /**
+   * Find the change of fitness with the gene at a value, growing the region
+   * when the value reaches outside it
+   * 
+   * @param value value of the gene
+   * @return fitness with the value minus fitness with the starting value
+   */
+  private long change(int value)
+  {
+    Long known = changes.get(value);
+    if (known != null) return known;
+
+    // The region already holds the triangle where the gene is now
+    int[] rect = genome.getGeneChangeRect(gene, value - genome.getGene(gene));
+    if (!contains(region, rect))
+    {
+      // Earlier changes hold on the larger region, only the base is new
+      region = Fitness.unionRect(region, rect);
+      genome.setGene(gene, origin);
+      base = evaluate(region);
+    }
+    genome.setGene(gene, value);
+    long change = evaluate(region) - base;
+    changes.put(value, change);
+    if (Constants.DEBUG_HILLCLIMB) System.out.println("line search " + gene + " " + value + " " + change);
+    return change;
+  }
+
+  /**
+   * Score a region of the genome
+   * 
+   * @param rect region to score
+   * @return fitness of the region
+   */
+  private long evaluate(int[] rect)
+  {
+    evaluations++;
+    return fitCalc.findRectFitness(genome, rect);
+  }
+
+  /**
+   * Get the largest value the gene of the search may take
+   * 
+   * @return largest valid value
+   */
+  private int maximum()
+  {
+    int index = gene % 10;
+    if (index >= 6) return Constants.COLOR_LIMIT - 1;
+    return (index % 2 == 0 ? genome.getWidth() : genome.getHeight()) - 1;
+  }
+
+  /**
+   * Check if a rectangle holds another
+   * 
+   * @param outer x, y, width and height of the outer rectangle
+   * @param inner x, y, width and height of the inner rectangle
+   * @return true if every pixel of inner is in outer
+   */
+  private static boolean contains(int[] outer, int[] inner)
+  {
+    return inner[0] >= outer[0] && inner[1] >= outer[1] && inner[0] + inner[2] <= outer[0] + outer[2]
+        && inner[1] + inner[3] <= outer[1] + outer[3];
+  }
+}
@@ -0,0 +1,74 @@
+package trianglegenome.util;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+
+/**
+ * Hill climbing that moves a gene straight to the best value along a line
+ *
+ * Every step chooses a gene and a direction and hands them to a LineSearch,
+ * which brackets and golden section searches the gene in one go. Nothing about
+ * the climb is kept on the genome between steps
+ *
+ */
+public class LineSearchMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private GeneSelector selector;
+  private final LineSearch lineSearch;
+
+  /**
+   * Create a new line search mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the gene to search
+   */
+  public LineSearchMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+    this.lineSearch = new LineSearch(fitCalc);
+  }
+
+  /**
+   * Get the line search, which counts evaluations per accepted step
+   * 
+   * @return line search
+   */
+  public LineSearch getLineSearch()
+  {
+    return lineSearch;
+  }
+
+  /**
+   * Search the best value of one gene
+   * 
+   * @return true if the genome improved
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Line searches finish in one step and leave no climb to continue
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    int gene = selector.selectGene(genome);
+    int direction = Constants.RANDOM.nextBoolean() ? 1 : -1;
+    for (int tries = 0; genome.tabu.isTabu(gene, direction) || !genome.canChange(gene, direction); tries++)
+    {
+      if (genome.tabu.isTabu(gene, direction)) fitCalc.skipEvaluation();
+      if (tries == Constants.TABU_RETRIES) return false;
+      gene = selector.selectGene(genome);
+      direction = Constants.RANDOM.nextBoolean() ? 1 : -1;
+    }
+
+    if (lineSearch.search(genome, gene, direction) < 0)
+    {
+      genome.changed(gene / 10, lineSearch.getRegion());
+      return true;
+    }
+    genome.tabu.reject(gene, direction);
+    return false;
+  }
+}
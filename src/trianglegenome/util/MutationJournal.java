@@ -0,0 +1,257 @@
+package trianglegenome.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Undo log that applies a batch of changes to a genome as one transaction
+ *
+ * Every change saves a copy of the triangle it touches before touching it, so
+ * a rollback puts back the genes and the cached spans of every triangle in
+ * time proportional to the number of changes. Swaps of the drawing order are
+ * undone by swapping back. The fitness and region fitness of the genome are
+ * restored as they were when the transaction began. The journal also keeps
+ * the region every change can have redrawn, so a transaction is scored with
+ * one region fitness
+ *
+ */
+public class MutationJournal
+{
+  private final Genome genome;
+  private final List<Integer> indexes = new ArrayList<>();
+  private final List<Triangle> saved = new ArrayList<>();
+  private int[] dirtyRect;
+  private long fitness;
+  private long rectFitness;
+  private boolean open;
+
+  /**
+   * Create a journal for a genome
+   * 
+   * @param genome genome the journal changes
+   */
+  public MutationJournal(Genome genome)
+  {
+    this.genome = genome;
+  }
+
+  /**
+   * Start a transaction
+   */
+  public void begin()
+  {
+    if (open) throw new IllegalStateException("Transaction already open");
+    open = true;
+    indexes.clear();
+    saved.clear();
+    dirtyRect = null;
+    fitness = genome.fitness;
+    rectFitness = genome.rectFitness;
+  }
+
+  /**
+   * Check if a transaction is open
+   * 
+   * @return true between begin and commit or rollback
+   */
+  public boolean isOpen()
+  {
+    return open;
+  }
+
+  /**
+   * Get the number of changes in the open transaction
+   * 
+   * @return changes made since begin
+   */
+  public int size()
+  {
+    return indexes.size();
+  }
+
+  /**
+   * Get the region every change of the transaction can have redrawn
+   * 
+   * @return x, y, width and height of the region, null before the first change
+   */
+  public int[] getDirtyRect()
+  {
+    return dirtyRect;
+  }
+
+  /**
+   * Set a gene
+   * 
+   * @param n gene to set
+   * @param value new value, must be valid
+   */
+  public void setGene(int n, int value)
+  {
+    Triangle triangle = touch(n / 10);
+    triangle.setGene(n % 10, value);
+    grow(triangle.getBoundingRect());
+  }
+
+  /**
+   * Move a vertex of a triangle, the move is cut back to stay on the image
+   * 
+   * @param index triangle to change
+   * @param vertex vertex 0, 1 or 2
+   * @param dx change of x
+   * @param dy change of y
+   */
+  public void moveVertex(int index, int vertex, int dx, int dy)
+  {
+    Triangle triangle = touch(index);
+    int x = triangle.getGene(vertex * 2);
+    int y = triangle.getGene(vertex * 2 + 1);
+    triangle.setGene(vertex * 2, clamp(x + dx, genome.getWidth() - 1));
+    triangle.setGene(vertex * 2 + 1, clamp(y + dy, genome.getHeight() - 1));
+    grow(triangle.getBoundingRect());
+  }
+
+  /**
+   * Move a whole triangle, the move is cut back so no vertex leaves the image
+   * and the shape is kept
+   * 
+   * @param index triangle to change
+   * @param dx change of x
+   * @param dy change of y
+   */
+  public void translate(int index, int dx, int dy)
+  {
+    Triangle triangle = touch(index);
+    int[] box = triangle.getBoundingRect();
+    dx = Math.max(-box[0], Math.min(dx, genome.getWidth() - 1 - box[0] - box[2]));
+    dy = Math.max(-box[1], Math.min(dy, genome.getHeight() - 1 - box[1] - box[3]));
+    for (int vertex = 0; vertex < 3; vertex++)
+    {
+      triangle.changeGene(vertex * 2, dx);
+      triangle.changeGene(vertex * 2 + 1, dy);
+    }
+    grow(triangle.getBoundingRect());
+  }
+
+  /**
+   * Change the red, green and blue of a triangle, each is cut back to stay in
+   * range
+   * 
+   * @param index triangle to change
+   * @param dr change of red
+   * @param dg change of green
+   * @param db change of blue
+   */
+  public void recolor(int index, int dr, int dg, int db)
+  {
+    Triangle triangle = touch(index);
+    triangle.setGene(6, clamp(triangle.getGene(6) + dr, Constants.COLOR_LIMIT - 1));
+    triangle.setGene(7, clamp(triangle.getGene(7) + dg, Constants.COLOR_LIMIT - 1));
+    triangle.setGene(8, clamp(triangle.getGene(8) + db, Constants.COLOR_LIMIT - 1));
+  }
+
+  /**
+   * Swap two triangles in the drawing order
+   * 
+   * @param i first triangle
+   * @param j second triangle
+   */
+  public void swap(int i, int j)
+  {
+    check();
+    List<Triangle> triangles = genome.getTriangles();
+    grow(triangles.get(i).getBoundingRect());
+    grow(triangles.get(j).getBoundingRect());
+    Collections.swap(triangles, i, j);
+    // A swap is its own undo, marked by a negative index
+    indexes.add(-1 - i);
+    saved.add(null);
+    indexes.add(-1 - j);
+    saved.add(null);
+  }
+
+  /**
+   * Keep the changes and close the transaction
+   */
+  public void commit()
+  {
+    check();
+    open = false;
+    indexes.clear();
+    saved.clear();
+  }
+
+  /**
+   * Undo every change of the transaction in reverse order and close it
+   */
+  public void rollback()
+  {
+    check();
+    List<Triangle> triangles = genome.getTriangles();
+    for (int k = indexes.size() - 1; k >= 0; k--)
+    {
+      int index = indexes.get(k);
+      if (index < 0)
+      {
+        Collections.swap(triangles, -1 - index, -1 - indexes.get(k - 1));
+        k--;
+      }
+      else
+      {
+        triangles.set(index, saved.get(k));
+      }
+    }
+    genome.fitness = fitness;
+    genome.rectFitness = rectFitness;
+    open = false;
+    indexes.clear();
+    saved.clear();
+  }
+
+  /**
+   * Save a copy of a triangle before changing it and grow the region by where
+   * it is now
+   * 
+   * @param index triangle about to change
+   * @return the triangle to change
+   */
+  private Triangle touch(int index)
+  {
+    check();
+    Triangle triangle = genome.getTriangles().get(index);
+    indexes.add(index);
+    saved.add(triangle.deepCopy());
+    grow(triangle.getBoundingRect());
+    return triangle;
+  }
+
+  /**
+   * Grow the dirty region to hold a rectangle
+   * 
+   * @param rect x, y, width and height of the rectangle
+   */
+  private void grow(int[] rect)
+  {
+    dirtyRect = dirtyRect == null ? rect : Fitness.unionRect(dirtyRect, rect);
+  }
+
+  /**
+   * Fail unless a transaction is open
+   */
+  private void check()
+  {
+    if (!open) throw new IllegalStateException("No open transaction");
+  }
+
+  /**
+   * Cut a value back into 0 to max
+   */
+  private static int clamp(int value, int max)
+  {
+    return Math.max(0, Math.min(value, max));
+  }
+}
@@ -0,0 +1,68 @@
+package trianglegenome.util;
+
+/**
+ * Mutation operators a tribe can use
+ *
+ */
+public enum MutatorType
+{
+  /**
+   * Climb a gene with growing steps, scoring only the region that changed
+   */
+  HILL_CLIMBING,
+
+  /**
+   * Set a gene to a random value and climb with that step if it was good
+   */
+  RANDOM,
+
+  /**
+   * Jump the color of a triangle to its least squares optimum
+   */
+  OPTIMAL_COLOR,
+
+  /**
+   * Accept worse moves by the Metropolis rule with an adaptive temperature
+   */
+  ANNEALING,
+
+  /**
+   * Move every gene of a triangle by Gaussian steps in a batch of offspring
+   * scored concurrently, keeping the best
+   */
+  EVOLUTION_STRATEGY,
+
+  /**
+   * Estimate the gradient of a whole triangle from two opposite random moves
+   * and line search along it
+   */
+  SPSA,
+
+  /**
+   * Move a gene to the best value along a line found by golden section search
+   */
+  LINE_SEARCH,
+
+  /**
+   * Move vertices or whole triangles, recolor them or swap their order, each
+   * as one transaction that is rolled back if it was not better
+   */
+  COMPOUND,
+
+  /**
+   * Swap or move triangles in the drawing order, predicted from cached
+   * composites and checked exactly
+   */
+  Z_ORDER,
+
+  /**
+   * Climb spatially disjoint groups of triangles of one genome in parallel
+   */
+  PARTITIONED,
+
+  /**
+   * Let a bandit share the steps between the other operators and the classes
+   * of genes they change, by how much fitness they gain per nanosecond
+   */
+  ADAPTIVE
+}
@@ -0,0 +1,107 @@
+package trianglegenome.util;
+
+import trianglegenome.Constants;
+
+/**
+ * Upper confidence bound bandit that rewards arms by fitness gained per
+ * nanosecond
+ *
+ * Old pulls fade by Constants.BANDIT_DECAY for every new pull, so the choice
+ * follows whatever pays off now. The exploration bonus is scaled by the best
+ * current rate, which makes the bandit independent of the size of the gains
+ *
+ */
+public class OperatorBandit
+{
+  private final double[] gain;
+  private final double[] time;
+  private final double[] pulls;
+  private double totalPulls;
+
+  /**
+   * Create a new bandit
+   * 
+   * @param arms number of arms
+   */
+  public OperatorBandit(int arms)
+  {
+    gain = new double[arms];
+    time = new double[arms];
+    pulls = new double[arms];
+  }
+
+  /**
+   * Choose the arm to pull next
+   * 
+   * @return arm index
+   */
+  public int selectArm()
+  {
+    double bestRate = 0;
+    int leastPulled = 0;
+    for (int i = 0; i < pulls.length; i++)
+    {
+      if (pulls[i] == 0) return i;
+      bestRate = Math.max(bestRate, getRate(i));
+      if (pulls[i] < pulls[leastPulled]) leastPulled = i;
+    }
+    if (bestRate <= 0) return leastPulled;
+
+    int best = 0;
+    double bestScore = -Double.MAX_VALUE;
+    for (int i = 0; i < pulls.length; i++)
+    {
+      double score = getRate(i) + Constants.BANDIT_EXPLORATION * bestRate
+          * Math.sqrt(Math.log(totalPulls) / pulls[i]);
+      if (score > bestScore)
+      {
+        bestScore = score;
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Record the result of a pull
+   * 
+   * @param arm arm that was pulled
+   * @param fitnessGain how much the fitness went down
+   * @param nanos how long the pull took
+   */
+  public void reward(int arm, long fitnessGain, long nanos)
+  {
+    for (int i = 0; i < pulls.length; i++)
+    {
+      gain[i] *= Constants.BANDIT_DECAY;
+      time[i] *= Constants.BANDIT_DECAY;
+      pulls[i] *= Constants.BANDIT_DECAY;
+    }
+    totalPulls = totalPulls * Constants.BANDIT_DECAY + 1;
+    gain[arm] += fitnessGain;
+    time[arm] += Math.max(nanos, 1);
+    pulls[arm]++;
+  }
+
+  /**
+   * Get the recent fitness gain per nanosecond of an arm
+   * 
+   * @param arm arm index
+   * @return gain per nanosecond, 0 if never pulled
+   */
+  public double getRate(int arm)
+  {
+    return time[arm] == 0 ? 0 : gain[arm] / time[arm];
+  }
+
+  /**
+   * Get the recent share of pulls that went to an arm
+   * 
+   * @param arm arm index
+   * @return share between 0 and 1
+   */
+  public double getShare(int arm)
+  {
+    return totalPulls == 0 ? 0 : pulls[arm] / totalPulls;
+  }
+}
@@ -0,0 +1,157 @@
+package trianglegenome.util;
+
+import java.nio.ByteBuffer;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Jumps the color of a random triangle straight to its least squares optimum
+ *
+ * With the alpha fixed every covered pixel ends up as v * c + u for the color
+ * c of the triangle, where v and u come from the composites below and above
+ * it. The squared error is then smallest at c = sum(v * (t - u)) / sum(v * v)
+ * for every channel. The jump is kept only when the exact fitness of the
+ * bounding rectangle improves. The remaining steps go to a fallback mutator
+ *
+ */
+public class OptimalColorMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private Mutator fallback;
+  private double share;
+  private GeneSelector selector;
+
+  /**
+   * Create a new optimal color mutator that chooses triangles uniformly
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param fallback mutator for the steps that do not jump
+   * @param share share of steps that jump, between 0 and 1
+   */
+  public OptimalColorMutator(Fitness fitCalc, Mutator fallback, double share)
+  {
+    this(fitCalc, fallback, share, new UniformGeneSelector());
+  }
+
+  /**
+   * Create a new optimal color mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param fallback mutator for the steps that do not jump
+   * @param share share of steps that jump, between 0 and 1
+   * @param selector chooses the triangle to recolor by one of its genes
+   */
+  public OptimalColorMutator(Fitness fitCalc, Mutator fallback, double share, GeneSelector selector)
+  {
+    this.fitCalc = fitCalc;
+    this.fallback = fallback;
+    this.share = share;
+    this.selector = selector;
+  }
+
+  /**
+   * Mutate a genome, either by a color jump or by the fallback
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    if (Constants.RANDOM.nextDouble() >= share)
+    {
+      return fallback.mutateGenome(genome);
+    }
+    return jumpColor(genome, selector.selectGene(genome) / 10);
+  }
+
+  /**
+   * Set a triangle to its optimal color if that improves the genome
+   * 
+   * @param genome genome to change
+   * @param index triangle to recolor
+   * @return true if the genome improved
+   */
+  public boolean jumpColor(Genome genome, int index)
+  {
+    Triangle triangle = genome.getTriangles().get(index);
+    int[] rect = triangle.getBoundingRect();
+    int[] optimal = findOptimalColor(genome, index, rect);
+    if (optimal == null) return false;
+
+    int[] colors = triangle.getColors();
+    int[] oldColors = { colors[0], colors[1], colors[2] };
+    if (oldColors[0] == optimal[0] && oldColors[1] == optimal[1] && oldColors[2] == optimal[2])
+    {
+      return false;
+    }
+
+    // Any climb in progress measured the old colors
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    long oldFitness = fitCalc.findRectFitness(genome, rect);
+    for (int c = 0; c < 3; c++)
+    {
+      triangle.setGene(6 + c, optimal[c]);
+    }
+    long newFitness = fitCalc.findRectFitness(genome, rect);
+    if (newFitness < oldFitness)
+    {
+      genome.fitness += newFitness - oldFitness;
+      genome.changed(index, rect);
+      return true;
+    }
+    for (int c = 0; c < 3; c++)
+    {
+      triangle.setGene(6 + c, oldColors[c]);
+    }
+    return false;
+  }
+
+  /**
+   * Find the least squares color of a triangle for its current alpha
+   * 
+   * @param genome genome holding the triangle
+   * @param index index of the triangle
+   * @param rect bounding rectangle of the triangle
+   * @return r, g and b values, or null when the triangle has no visible pixels
+   */
+  private int[] findOptimalColor(Genome genome, int index, int[] rect)
+  {
+    Triangle triangle = genome.getTriangles().get(index);
+    LayerComposite composite = new LayerComposite(genome, index, rect);
+    ByteBuffer target = fitCalc.getTarget().getPixels();
+    int width = genome.getWidth();
+    double alpha = triangle.getColors()[3] / 255.0;
+    double[] numerator = new double[3];
+    double denominator = 0;
+
+    int[] spans = triangle.getSpans();
+    for (int row = 0; row < spans[1]; row++)
+    {
+      int y = spans[0] + row;
+      for (int x = spans[2 + row * 2]; x < spans[3 + row * 2]; x++)
+      {
+        double v = composite.getScale(x, y) * alpha;
+        denominator += v * v;
+        for (int b = 0; b < 3; b++)
+        {
+          double u = composite.getScale(x, y) * (1 - alpha) * composite.getBelow(x, y, b)
+              + composite.getOffset(x, y, b);
+          numerator[b] += v * ((target.get((y * width + x) * 3 + b) & 0xff) - u);
+        }
+      }
+    }
+    if (denominator == 0) return null;
+
+    // Bands are in byte order, colors are r g b
+    int[] optimal = new int[3];
+    for (int b = 0; b < 3; b++)
+    {
+      long value = Math.round(numerator[b] / denominator);
+      optimal[2 - b] = (int) Math.max(0, Math.min(Constants.COLOR_LIMIT - 1, value));
+    }
+    return optimal;
+  }
+}
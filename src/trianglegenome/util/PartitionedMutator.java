@@ -0,0 +1,205 @@
+package trianglegenome.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Hill climbing of spatially disjoint groups of one genome in parallel
+ *
+ * Every step grows the bounding rectangles of a few triangles chosen by the
+ * selector by Constants.PARTITION_MARGIN and keeps those that do not overlap.
+ * Each such region becomes a group, holding every triangle that lies inside
+ * it, and the groups are climbed concurrently for Constants.PARTITION_STEPS
+ * evaluations each. A worker climbs copies of its triangles in a private
+ * genome that shares every other triangle, scores only its own region and
+ * never lets a triangle leave it. The regions share no pixels, so the changes
+ * are merged by adding up the changes in region fitness and the genome
+ * fitness stays exact
+ *
+ */
+public class PartitionedMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private GeneSelector selector;
+
+  /**
+   * Create a new partitioned mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the triangles the groups are grown from
+   */
+  public PartitionedMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+  }
+
+  /**
+   * Climb disjoint groups of the genome in parallel and merge the results
+   * 
+   * @return true if any group improved
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Groups do not continue climbs of other mutators
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    List<Triangle> triangles = genome.getTriangles();
+    List<int[]> regions = new ArrayList<>();
+    for (int tries = 0; tries < Constants.PARTITION_GROUPS * 2 && regions.size() < Constants.PARTITION_GROUPS;
+        tries++)
+    {
+      int[] box = triangles.get(selector.selectGene(genome) / 10).getBoundingRect();
+      int margin = Constants.PARTITION_MARGIN;
+      int[] region = clip(new int[] { box[0] - margin, box[1] - margin, box[2] + 2 * margin,
+          box[3] + 2 * margin }, genome);
+      boolean free = true;
+      for (int[] other : regions)
+      {
+        free &= !overlaps(region, other);
+      }
+      if (free) regions.add(region);
+    }
+
+    // A triangle may only move inside its own region
+    List<List<Integer>> groups = new ArrayList<>();
+    for (int[] region : regions)
+    {
+      List<Integer> group = new ArrayList<>();
+      for (int i = 0; i < triangles.size(); i++)
+      {
+        if (inside(triangles.get(i).getBoundingRect(), region)) group.add(i);
+      }
+      groups.add(group);
+    }
+
+    long[] changes = new long[regions.size()];
+    List<List<Triangle>> climbed = new ArrayList<>();
+    for (int g = 0; g < regions.size(); g++)
+    {
+      climbed.add(null);
+    }
+    IntStream.range(0, regions.size()).parallel().forEach(g ->
+    {
+      List<Triangle> copy = new ArrayList<>(triangles);
+      for (int index : groups.get(g))
+      {
+        copy.set(index, triangles.get(index).deepCopy());
+      }
+      Genome worker = new Genome(copy, genome.getWidth(), genome.getHeight());
+      changes[g] = climbGroup(worker, groups.get(g), regions.get(g));
+      climbed.set(g, copy);
+    });
+
+    boolean improved = false;
+    for (int g = 0; g < regions.size(); g++)
+    {
+      if (changes[g] >= 0) continue;
+      for (int index : groups.get(g))
+      {
+        triangles.set(index, climbed.get(g).get(index));
+        genome.changed(index, regions.get(g));
+      }
+      genome.fitness += changes[g];
+      improved = true;
+    }
+    return improved;
+  }
+
+  /**
+   * Climb the triangles of a group with single gene moves that keep them
+   * inside their region
+   * 
+   * @param worker private genome holding copies of the triangles of the group
+   * @param group indexes of the triangles of the group
+   * @param region region of the group
+   * @return change of the region fitness, negative if it improved
+   */
+  private long climbGroup(Genome worker, List<Integer> group, int[] region)
+  {
+    if (group.isEmpty()) return 0;
+    long base = fitCalc.findRectFitness(worker, region);
+    long fitness = base;
+    int gene = -1;
+    int delta = 0;
+    for (int step = 0; step < Constants.PARTITION_STEPS; step++)
+    {
+      if (gene == -1)
+      {
+        gene = group.get(Constants.RANDOM.nextInt(group.size())) * 10 + Constants.RANDOM.nextInt(10);
+        delta = Constants.RANDOM.nextBoolean() ? 1 : -1;
+      }
+      if (!worker.canChange(gene, delta)
+          || !inside(worker.getGeneChangeRect(gene, delta), region))
+      {
+        gene = -1;
+        continue;
+      }
+      worker.changeGene(gene, delta);
+      long newFitness = fitCalc.findRectFitness(worker, region);
+      if (newFitness < fitness)
+      {
+        // Keep climbing this gene with a growing step
+        fitness = newFitness;
+        delta *= 2;
+      }
+      else
+      {
+        worker.changeGene(gene, -delta);
+        gene = Math.abs(delta) > 1 ? gene : -1;
+        delta /= 2;
+      }
+    }
+    return fitness - base;
+  }
+
+  /**
+   * Clip a rectangle to a genome
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @param genome genome to clip to
+   * @return rectangle inside the genome
+   */
+  private static int[] clip(int[] rect, Genome genome)
+  {
+    int left = Math.max(rect[0], 0);
+    int top = Math.max(rect[1], 0);
+    int right = Math.min(rect[0] + rect[2], genome.getWidth());
+    int bottom = Math.min(rect[1] + rect[3], genome.getHeight());
+    return new int[] { left, top, right - left, bottom - top };
+  }
+
+  /**
+   * Check if two rectangles share a pixel, a rectangle covers the pixels from
+   * x to x + width inclusive like the bounding rectangles of triangles
+   * 
+   * @param a x, y, width and height of the first rectangle
+   * @param b x, y, width and height of the second rectangle
+   * @return true if they overlap
+   */
+  private static boolean overlaps(int[] a, int[] b)
+  {
+    return a[0] <= b[0] + b[2] && b[0] <= a[0] + a[2] && a[1] <= b[1] + b[3] && b[1] <= a[1] + a[3];
+  }
+
+  /**
+   * Check if a rectangle lies inside a region
+   * 
+   * @param rect x, y, width and height of the rectangle
+   * @param region x, y, width and height of the region
+   * @return true if every pixel of the rectangle is in the region
+   */
+  private static boolean inside(int[] rect, int[] region)
+  {
+    return rect[0] >= region[0] && rect[1] >= region[1] && rect[0] + rect[2] <= region[0] + region[2]
+        && rect[1] + rect[3] <= region[1] + region[3];
+  }
+}
@@ -13,19 +13,34 @@ public class RandomMutator implements Mutator
   private Fitness fitCalc;
   private int width;
   private int height;
+  private GeneSelector selector;
 
   /**
-   * Create a new random mutator
+   * Create a new random mutator that chooses genes uniformly
    * 
    * @param fitCalc calculator to use
    * @param width width of target image
    * @param height height of target image
    */
   public RandomMutator(Fitness fitCalc, int width, int height)
+  {
+    this(fitCalc, width, height, new UniformGeneSelector());
+  }
+
+  /**
+   * Create a new random mutator
+   * 
+   * @param fitCalc calculator to use
+   * @param width width of target image
+   * @param height height of target image
+   * @param selector chooses the gene of a new climb
+   */
+  public RandomMutator(Fitness fitCalc, int width, int height, GeneSelector selector)
   {
     this.fitCalc = fitCalc;
     this.width = width;
     this.height = height;
+    this.selector = selector;
   }
 
   /**
@@ -55,6 +70,24 @@ public class RandomMutator implements Mutator
     return checkForImprovement(genome);
   }
 
+  /**
+   * Set random genes to random valid values without finding the fitness, used
+   * for offspring that are evaluated later as a batch
+   * 
+   * @param genome genome to change
+   * @param genes how many genes to change
+   */
+  public void perturbGenome(Genome genome, int genes)
+  {
+    for (int i = 0; i < genes; i++)
+    {
+      int randGene = Constants.RANDOM.nextInt(genome.getGeneCount());
+      genome.setGene(randGene, randVal(randGene));
+    }
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+  }
+
   /**
    * Check if genome has improved otherwise reset
    * 
@@ -69,10 +102,18 @@ public class RandomMutator implements Mutator
     if (newFitness < genome.getFitness())
     {
       genome.setFitness(newFitness);
+      // The error map was just filled for this genome, only the tabu list is stale
+      genome.tabu.changed(genome, genome.previousGene / 10,
+          genome.getGeneChangeRect(genome.previousGene, -genome.previousDelta));
       return true;
     }
     else
     {
+      // The error map was filled for the move that is undone
+      if (genome.errorMap != null)
+      {
+        genome.errorMap.markChanged(genome.getGeneChangeRect(genome.previousGene, -genome.previousDelta));
+      }
       resetClimb(genome);
       return false;
     }
@@ -104,7 +145,7 @@ public class RandomMutator implements Mutator
    */
   private void randomClimb(Genome genome)
   {
-    int randGene = Constants.RANDOM.nextInt(Constants.GENE_COUNT);
+    int randGene = selector.selectGene(genome);
     int newVal = randVal(randGene);
     genome.oldGeneValue = genome.getGene(randGene);
     genome.setGene(randGene, newVal);
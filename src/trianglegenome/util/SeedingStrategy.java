@@ -0,0 +1,19 @@
+package trianglegenome.util;
+
+/**
+ * Ways a tribe can create the genomes of its initial population
+ *
+ */
+public enum SeedingStrategy
+{
+  /**
+   * Random triangles colored with the mean of the target under them
+   */
+  RANDOM,
+
+  /**
+   * Cells of a Delaunay triangulation of edge points of the target, the cells
+   * with the highest error first
+   */
+  DELAUNAY
+}
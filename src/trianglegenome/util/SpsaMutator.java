@@ -0,0 +1,207 @@
+package trianglegenome.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Simultaneous perturbation stochastic approximation over whole triangles
+ *
+ * Every gene of a group of triangles is moved by Constants.SPSA_PERTURBATION
+ * in a random direction and back the other way, and the two fitnesses give a
+ * gradient estimate along every gene at once. Constants.SPSA_SAMPLES such pairs
+ * are averaged, and a line search then doubles the step along the estimate
+ * while the fitness improves. Everything is scored on the region the group can
+ * reach, so one evaluation of the group before the move is enough
+ *
+ */
+public class SpsaMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private GeneSelector selector;
+  private final int groupSize;
+
+  /**
+   * Create a new SPSA mutator over groups of Constants.SPSA_GROUP_SIZE
+   * triangles
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the triangles to move, through any of their genes
+   */
+  public SpsaMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this(fitCalc, selector, Constants.SPSA_GROUP_SIZE);
+  }
+
+  /**
+   * Create a new SPSA mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the triangles to move, through any of their genes
+   * @param groupSize how many triangles move together
+   */
+  public SpsaMutator(Fitness fitCalc, GeneSelector selector, int groupSize)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+    this.groupSize = groupSize;
+  }
+
+  /**
+   * Estimate the gradient of a group of triangles and line search along it
+   * 
+   * @return true if the genome improved
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Whole triangle moves do not continue climbs
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    List<Triangle> triangles = genome.getTriangles();
+    List<Integer> group = new ArrayList<>();
+    for (int i = 0; i < groupSize * 4 && group.size() < Math.min(groupSize, triangles.size()); i++)
+    {
+      int index = selector.selectGene(genome) / 10;
+      if (!group.contains(index)) group.add(index);
+    }
+    Triangle[] parents = new Triangle[group.size()];
+    int[] region = null;
+    int reach = Math.max(Constants.SPSA_PERTURBATION, Constants.SPSA_MAX_STEP);
+    for (int i = 0; i < parents.length; i++)
+    {
+      parents[i] = triangles.get(group.get(i));
+      int[] rect = parents[i].getBoundingRect();
+      rect = new int[] { rect[0] - reach, rect[1] - reach, rect[2] + 2 * reach, rect[3] + 2 * reach };
+      region = region == null ? rect : Fitness.unionRect(region, rect);
+    }
+
+    long parentFitness = fitCalc.findRectFitness(genome, region);
+    long bestFitness = parentFitness;
+    int[] bestDeltas = null;
+
+    // Average the gradient over a few random perturbations
+    int genes = parents.length * 10;
+    double[] gradient = new double[genes];
+    for (int s = 0; s < Constants.SPSA_SAMPLES; s++)
+    {
+      int[] plus = new int[genes];
+      int[] minus = new int[genes];
+      for (int n = 0; n < genes; n++)
+      {
+        plus[n] = Constants.RANDOM.nextBoolean() ? Constants.SPSA_PERTURBATION : -Constants.SPSA_PERTURBATION;
+        minus[n] = -plus[n];
+      }
+      long plusFitness = evaluate(genome, group, parents, plus, region);
+      long minusFitness = evaluate(genome, group, parents, minus, region);
+      for (int n = 0; n < genes; n++)
+      {
+        gradient[n] += (plusFitness - minusFitness) / (2.0 * plus[n]);
+      }
+      // The probes are moves too
+      if (plusFitness < bestFitness)
+      {
+        bestFitness = plusFitness;
+        bestDeltas = plus;
+      }
+      if (minusFitness < bestFitness)
+      {
+        bestFitness = minusFitness;
+        bestDeltas = minus;
+      }
+    }
+
+    double largest = 0;
+    for (double g : gradient)
+    {
+      largest = Math.max(largest, Math.abs(g));
+    }
+    if (largest > 0)
+    {
+      // Double the step along the gradient while it keeps improving
+      long lineFitness = Long.MAX_VALUE;
+      for (int step = 1; step <= Constants.SPSA_MAX_STEP; step *= 2)
+      {
+        int[] deltas = new int[genes];
+        for (int n = 0; n < genes; n++)
+        {
+          deltas[n] = (int) Math.round(-gradient[n] / largest * step);
+        }
+        long fitness = evaluate(genome, group, parents, deltas, region);
+        if (fitness < bestFitness)
+        {
+          bestFitness = fitness;
+          bestDeltas = deltas;
+        }
+        if (fitness >= lineFitness) break;
+        lineFitness = fitness;
+      }
+    }
+
+    if (bestDeltas == null) return false;
+    for (int i = 0; i < parents.length; i++)
+    {
+      triangles.set(group.get(i), moved(parents[i], bestDeltas, i * 10));
+    }
+    genome.fitness += bestFitness - parentFitness;
+    for (int index : group)
+    {
+      genome.changed(index, region);
+    }
+    return true;
+  }
+
+  /**
+   * Score the group moved by some deltas and put the group back
+   * 
+   * @param genome genome holding the group
+   * @param group indexes of the triangles
+   * @param parents triangles of the group before the move
+   * @param deltas change of every gene of the group in order
+   * @param region region to score
+   * @return fitness of the region with the group moved
+   */
+  private long evaluate(Genome genome, List<Integer> group, Triangle[] parents, int[] deltas, int[] region)
+  {
+    List<Triangle> triangles = genome.getTriangles();
+    for (int i = 0; i < parents.length; i++)
+    {
+      triangles.set(group.get(i), moved(parents[i], deltas, i * 10));
+    }
+    long fitness = fitCalc.findRectFitness(genome, region);
+    for (int i = 0; i < parents.length; i++)
+    {
+      triangles.set(group.get(i), parents[i]);
+    }
+    return fitness;
+  }
+
+  /**
+   * Copy a triangle with its genes changed, each change is cut back to stay in
+   * range
+   * 
+   * @param triangle triangle to copy
+   * @param deltas changes of genes
+   * @param offset index in deltas of the first gene of the triangle
+   * @return changed copy
+   */
+  private static Triangle moved(Triangle triangle, int[] deltas, int offset)
+  {
+    Triangle copy = triangle.deepCopy();
+    for (int n = 0; n < 10; n++)
+    {
+      int delta = deltas[offset + n];
+      while (delta != 0 && !copy.canChange(n, delta))
+      {
+        delta -= Integer.signum(delta);
+      }
+      if (delta != 0) copy.changeGene(n, delta);
+    }
+    return copy;
+  }
+}
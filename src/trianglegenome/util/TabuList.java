@@ -0,0 +1,82 @@
+package trianglegenome.util;
+
+import java.util.BitSet;
+import java.util.List;
+
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Moves of a genome that were tried and rejected, kept as one bit for every
+ * gene and direction
+ *
+ * A move stays tabu until its triangle or a triangle overlapping it changes,
+ * since only then can its result differ
+ *
+ */
+public class TabuList
+{
+  private final BitSet moves = new BitSet();
+
+  /**
+   * Check if a move was rejected since its region last changed
+   * 
+   * @param gene gene of the move
+   * @param delta direction of the move
+   * @return true if the move should be skipped
+   */
+  public boolean isTabu(int gene, int delta)
+  {
+    return moves.get(index(gene, delta));
+  }
+
+  /**
+   * Remember a rejected move
+   * 
+   * @param gene gene of the move
+   * @param delta direction of the move
+   */
+  public void reject(int gene, int delta)
+  {
+    moves.set(index(gene, delta));
+  }
+
+  /**
+   * Forget the moves a change may have made worth trying again
+   * 
+   * @param genome genome that changed
+   * @param triangle index of the triangle that changed
+   * @param rect x, y, width and height of the pixels that changed
+   */
+  public void changed(Genome genome, int triangle, int[] rect)
+  {
+    moves.clear(triangle * 20, triangle * 20 + 20);
+    List<Triangle> triangles = genome.getTriangles();
+    for (int i = 0; i < triangles.size(); i++)
+    {
+      // A move of one pixel can reach one pixel past the bounding rectangle
+      int[] box = triangles.get(i).getBoundingRect();
+      if (box[0] - 1 < rect[0] + rect[2] && rect[0] < box[0] + box[2] + 1 && box[1] - 1 < rect[1] + rect[3]
+          && rect[1] < box[1] + box[3] + 1)
+      {
+        moves.clear(i * 20, i * 20 + 20);
+      }
+    }
+  }
+
+  /**
+   * Forget every move
+   */
+  public void clear()
+  {
+    moves.clear();
+  }
+
+  /**
+   * Bit of a move
+   */
+  private static int index(int gene, int delta)
+  {
+    return gene * 2 + (delta > 0 ? 1 : 0);
+  }
+}
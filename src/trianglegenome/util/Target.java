@@ -0,0 +1,236 @@
+package trianglegenome.util;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+
+import trianglegenome.Constants;
+
+/**
+ * Immutable, preprocessed target image shared by every tribe and fitness
+ * calculator
+ *
+ * Holds the packed BGR byte plane of the target and tables derived from it.
+ * The plane is kept off the heap when Constants.OFF_HEAP is set. Nothing here
+ * may be modified after construction, so one instance is safe to read from any
+ * number of threads
+ *
+ */
+public class Target
+{
+  private final int width;
+  private final int height;
+  private final ByteBuffer pixels;
+  private final long[] sums;
+  private final long[] squareSums;
+  private Target halfSize;
+
+  /**
+   * Create a target from an image of any type
+   * 
+   * @param image target image
+   */
+  public Target(BufferedImage image)
+  {
+    this(image.getWidth(), image.getHeight(), toBytes(image));
+  }
+
+  /**
+   * Create a target from a packed BGR byte plane, the plane is only copied when
+   * it goes off the heap
+   * 
+   * @param width width of the target
+   * @param height height of the target
+   * @param pixels packed BGR pixels, 3 bytes per pixel row by row
+   */
+  private Target(int width, int height, byte[] pixels)
+  {
+    this.width = width;
+    this.height = height;
+    if (Constants.OFF_HEAP)
+    {
+      this.pixels = ByteBuffer.allocateDirect(pixels.length);
+      this.pixels.put(pixels);
+    }
+    else
+    {
+      this.pixels = ByteBuffer.wrap(pixels);
+    }
+    int stride = width + 1;
+    sums = new long[stride * (height + 1) * 3];
+    squareSums = new long[stride * (height + 1) * 3];
+
+    // Summed area tables, entry (x, y) holds the sum of all pixels above and
+    // to the left of (x, y)
+    for (int y = 0; y < height; y++)
+    {
+      long[] rowSum = new long[3];
+      long[] rowSquareSum = new long[3];
+      for (int x = 0; x < width; x++)
+      {
+        int index = ((y + 1) * stride + x + 1) * 3;
+        int above = (y * stride + x + 1) * 3;
+        int pixel = (y * width + x) * 3;
+        for (int b = 0; b < 3; b++)
+        {
+          int value = pixels[pixel + b] & 0xff;
+          rowSum[b] += value;
+          rowSquareSum[b] += value * value;
+          sums[index + b] = sums[above + b] + rowSum[b];
+          squareSums[index + b] = squareSums[above + b] + rowSquareSum[b];
+        }
+      }
+    }
+  }
+
+  /**
+   * Copy an image into a packed BGR byte plane
+   * 
+   * @param image image to copy
+   * @return packed pixels
+   */
+  static byte[] toBytes(BufferedImage image)
+  {
+    BufferedImage byteImage = new BufferedImage(image.getWidth(), image.getHeight(),
+        Constants.BUF_IMG_TYPE);
+    Graphics g = byteImage.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return ((DataBufferByte) byteImage.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * Get the width of the target
+   * 
+   * @return width
+   */
+  public int getWidth()
+  {
+    return width;
+  }
+
+  /**
+   * Get the height of the target
+   * 
+   * @return height
+   */
+  public int getHeight()
+  {
+    return height;
+  }
+
+  /**
+   * Get the packed BGR pixels of the target, shared so must not be modified
+   * 
+   * @return pixels, 3 bytes per pixel row by row
+   */
+  public ByteBuffer getPixels()
+  {
+    return pixels;
+  }
+
+  /**
+   * Sum of one channel over a rectangle in constant time
+   * 
+   * @param x left of the rectangle
+   * @param y top of the rectangle
+   * @param w width of the rectangle
+   * @param h height of the rectangle
+   * @param band channel in byte order, 0 blue, 1 green, 2 red
+   * @return sum of the channel values
+   */
+  public long rectSum(int x, int y, int w, int h, int band)
+  {
+    return tableSum(sums, x, y, w, h, band);
+  }
+
+  /**
+   * Mean of one channel over a rectangle in constant time
+   * 
+   * @param x left of the rectangle
+   * @param y top of the rectangle
+   * @param w width of the rectangle, at least 1
+   * @param h height of the rectangle, at least 1
+   * @param band channel in byte order, 0 blue, 1 green, 2 red
+   * @return mean of the channel values rounded down
+   */
+  public int rectMean(int x, int y, int w, int h, int band)
+  {
+    return (int) (rectSum(x, y, w, h, band) / ((long) w * h));
+  }
+
+  /**
+   * Sum of the squares of one channel over a rectangle in constant time
+   * 
+   * @param x left of the rectangle
+   * @param y top of the rectangle
+   * @param w width of the rectangle
+   * @param h height of the rectangle
+   * @param band channel in byte order, 0 blue, 1 green, 2 red
+   * @return sum of the squared channel values
+   */
+  public long rectSquareSum(int x, int y, int w, int h, int band)
+  {
+    return tableSum(squareSums, x, y, w, h, band);
+  }
+
+  /**
+   * Look up a rectangle in a summed area table
+   */
+  private long tableSum(long[] table, int x, int y, int w, int h, int band)
+  {
+    int stride = width + 1;
+    int x2 = x + w;
+    int y2 = y + h;
+    return table[(y2 * stride + x2) * 3 + band] - table[(y * stride + x2) * 3 + band]
+        - table[(y2 * stride + x) * 3 + band] + table[(y * stride + x) * 3 + band];
+  }
+
+  /**
+   * Get the target at half the resolution, made once on first use
+   * 
+   * @return target averaged down over 2x2 blocks
+   */
+  public synchronized Target getHalfSize()
+  {
+    if (halfSize == null)
+    {
+      int w = Math.max(1, width / 2);
+      int h = Math.max(1, height / 2);
+      byte[] half = new byte[w * h * 3];
+      for (int y = 0; y < h; y++)
+      {
+        for (int x = 0; x < w; x++)
+        {
+          int sx = Math.min(x * 2, width - 1);
+          int sy = Math.min(y * 2, height - 1);
+          int sw = Math.min(2, width - sx);
+          int sh = Math.min(2, height - sy);
+          for (int b = 0; b < 3; b++)
+          {
+            half[(y * w + x) * 3 + b] = (byte) (rectSum(sx, sy, sw, sh, b) / (sw * sh));
+          }
+        }
+      }
+      halfSize = new Target(w, h, half);
+    }
+    return halfSize;
+  }
+
+  /**
+   * Get a level of the resolution pyramid
+   * 
+   * @param level 0 for full size, each level halves the resolution
+   * @return target at that level
+   */
+  public Target getLevel(int level)
+  {
+    Target target = this;
+    for (int i = 0; i < level; i++)
+    {
+      target = target.getHalfSize();
+    }
+    return target;
+  }
+}
@@ -0,0 +1,216 @@
+package trianglegenome.util;
+
+import java.util.List;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Finds triangles that do not change a single pixel and seeds them again
+ * where the genome is furthest from the target
+ *
+ * A triangle changes nothing when it covers no pixel of the target, having no
+ * area or lying off it, when it is fully transparent, or when every pixel it
+ * covers is covered again by an opaque triangle drawn later. One pass over the
+ * spans from the top triangle down counts the pixels every triangle shows. A
+ * dead triangle is moved into a tile of the error map picked by its error,
+ * colored with the mean of the target under the tile, and kept there only if
+ * the region fitness improves. Triangles added to a growing genome are seeded
+ * the same way
+ *
+ */
+public class TriangleRecycler
+{
+  private final Fitness fitCalc;
+
+  /**
+   * Create a new triangle recycler
+   * 
+   * @param fitCalc fitness calculator to use
+   */
+  public TriangleRecycler(Fitness fitCalc)
+  {
+    this.fitCalc = fitCalc;
+  }
+
+  /**
+   * Seed every dead triangle of a genome again
+   * 
+   * @param genome genome to recycle, its fitness is kept exact
+   * @return number of triangles seeded again
+   */
+  public int recycle(Genome genome)
+  {
+    // A fresh map gives the error of every tile
+    genome.setFitness(fitCalc.findFitness(genome));
+    int[] visible = visiblePixels(genome);
+    int recycled = 0;
+    for (int i = 0; i < visible.length; i++)
+    {
+      if (visible[i] > 0) continue;
+      for (int tries = 0; tries < Constants.RECYCLE_TRIES; tries++)
+      {
+        if (reseed(genome, i))
+        {
+          recycled++;
+          break;
+        }
+      }
+    }
+    // A climb may have been on a triangle that moved
+    if (recycled > 0) resetClimb(genome);
+    return recycled;
+  }
+
+  /**
+   * Add triangles on top of a genome, each seeded where the genome is furthest
+   * from the target or left transparent if no seed improves it
+   * 
+   * @param genome genome to grow, its fitness is kept exact
+   * @param count number of triangles to add
+   * @return number of added triangles that improved the genome
+   */
+  public int grow(Genome genome, int count)
+  {
+    genome.setFitness(fitCalc.findFitness(genome));
+    List<Triangle> triangles = genome.getTriangles();
+    int seeded = 0;
+    for (int i = 0; i < count; i++)
+    {
+      // A transparent triangle changes no pixel, so the fitness still holds
+      triangles.add(new Triangle(new int[3], new int[3], new int[4], genome.getWidth(), genome.getHeight()));
+      for (int tries = 0; tries < Constants.RECYCLE_TRIES; tries++)
+      {
+        if (reseed(genome, triangles.size() - 1))
+        {
+          seeded++;
+          break;
+        }
+      }
+    }
+    // A seeded triangle may cover the region of a color climb, whose region
+    // fitness is kept between steps
+    if (seeded > 0) resetClimb(genome);
+    return seeded;
+  }
+
+  /**
+   * Stop the climb of a genome, its next step starts a new one
+   * 
+   * @param genome genome to reset
+   */
+  private static void resetClimb(Genome genome)
+  {
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+  }
+
+  /**
+   * Count the pixels of the target every triangle of a genome changes
+   * 
+   * @param genome genome to look at
+   * @return number of pixels each triangle shows, 0 for dead triangles
+   */
+  public static int[] visiblePixels(Genome genome)
+  {
+    List<Triangle> triangles = genome.getTriangles();
+    int width = genome.getWidth();
+    boolean[] hidden = new boolean[width * genome.getHeight()];
+    int[] visible = new int[triangles.size()];
+    for (int i = triangles.size() - 1; i >= 0; i--)
+    {
+      Triangle triangle = triangles.get(i);
+      int alpha = triangle.getColors()[3];
+      int[] spans = triangle.getSpans();
+      for (int row = 0; row < spans[1]; row++)
+      {
+        int y = spans[0] + row;
+        for (int x = spans[2 + row * 2]; x < spans[3 + row * 2]; x++)
+        {
+          if (hidden[y * width + x]) continue;
+          if (alpha > 0) visible[i]++;
+          // An opaque triangle replaces every pixel under it
+          if (alpha == 255) hidden[y * width + x] = true;
+        }
+      }
+    }
+    return visible;
+  }
+
+  /**
+   * Move a triangle into a tile picked by its error
+   * 
+   * @param genome genome holding the triangle, with a filled error map
+   * @param index triangle to move
+   * @return true if the move improved the genome and was kept
+   */
+  private boolean reseed(Genome genome, int index)
+  {
+    ErrorMap map = genome.errorMap;
+    int tile = pickTile(map);
+    int tileSize = map.getTileSize();
+    int left = tile % map.getColumns() * tileSize;
+    int top = tile / map.getColumns() * tileSize;
+    int width = Math.min(tileSize, genome.getWidth() - left);
+    int height = Math.min(tileSize, genome.getHeight() - top);
+
+    int[] genes = new int[10];
+    for (int vertex = 0; vertex < 3; vertex++)
+    {
+      genes[vertex * 2] = left + Constants.RANDOM.nextInt(width);
+      genes[vertex * 2 + 1] = top + Constants.RANDOM.nextInt(height);
+    }
+    // Target channels are in byte order, blue first
+    Target target = fitCalc.getTarget();
+    for (int band = 0; band < 3; band++)
+    {
+      genes[8 - band] = target.rectMean(left, top, width, height, band);
+    }
+    genes[9] = Constants.RECYCLE_ALPHA;
+
+    int[] rect = Fitness.unionRect(genome.getTriangles().get(index).getBoundingRect(),
+        new int[] { left, top, width, height });
+    long before = fitCalc.findRectFitness(genome, rect);
+    MutationJournal journal = genome.journal;
+    journal.begin();
+    for (int n = 0; n < 10; n++)
+    {
+      journal.setGene(index * 10 + n, genes[n]);
+    }
+    long after = fitCalc.findRectFitness(genome, rect);
+    if (after < before)
+    {
+      journal.commit();
+      genome.fitness += after - before;
+      genome.changed(index, rect);
+      return true;
+    }
+    journal.rollback();
+    return false;
+  }
+
+  /**
+   * Pick a tile of an error map with a chance proportional to its error
+   * 
+   * @param map error map to pick from
+   * @return index of the tile, row by row
+   */
+  private static int pickTile(ErrorMap map)
+  {
+    int tiles = map.getColumns() * map.getRows();
+    long total = 0;
+    for (int tile = 0; tile < tiles; tile++)
+    {
+      total += map.getTileError(tile % map.getColumns(), tile / map.getColumns());
+    }
+    long pick = (long) (Constants.RANDOM.nextDouble() * total);
+    for (int tile = 0; tile < tiles; tile++)
+    {
+      pick -= map.getTileError(tile % map.getColumns(), tile / map.getColumns());
+      if (pick < 0) return tile;
+    }
+    return tiles - 1;
+  }
+}
@@ -0,0 +1,20 @@
+package trianglegenome.util;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+
+/**
+ * Chooses every gene with the same chance
+ *
+ */
+public class UniformGeneSelector implements GeneSelector
+{
+  /**
+   * Choose a random gene
+   */
+  @Override
+  public int selectGene(Genome genome)
+  {
+    return Constants.RANDOM.nextInt(genome.getTriangles().size() * 10);
+  }
+}
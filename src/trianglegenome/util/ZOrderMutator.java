@@ -0,0 +1,130 @@
+package trianglegenome.util;
+
+import java.util.List;
+
+import trianglegenome.Constants;
+import trianglegenome.Genome;
+import trianglegenome.Triangle;
+
+/**
+ * Mutator that changes the drawing order of triangles
+ *
+ * A step either swaps a triangle with another one it overlaps or moves it to
+ * another place in the order. Only pixels under the moved triangles can
+ * change, so every move is scored with the region fitness of their bounding
+ * rectangles and rolled back through the genome's journal if it does not
+ * improve
+ *
+ */
+public class ZOrderMutator implements Mutator
+{
+  private Fitness fitCalc;
+  private GeneSelector selector;
+
+  /**
+   * Create a new z-order mutator
+   * 
+   * @param fitCalc fitness calculator to use
+   * @param selector chooses the triangle to move, through any of its genes
+   */
+  public ZOrderMutator(Fitness fitCalc, GeneSelector selector)
+  {
+    this.fitCalc = fitCalc;
+    this.selector = selector;
+  }
+
+  /**
+   * Swap or move one triangle in the drawing order
+   * 
+   * @return true if the genome improved
+   */
+  @Override
+  public boolean mutateGenome(Genome genome)
+  {
+    // Reordering does not continue climbs
+    genome.previousGene = -1;
+    genome.previousDelta = 0;
+    genome.successfulClimbs = 0;
+
+    List<Triangle> triangles = genome.getTriangles();
+    if (triangles.size() < 2) return false;
+    int from = selector.selectGene(genome) / 10;
+    int[] rect = triangles.get(from).getBoundingRect();
+    int to;
+    boolean swap = Constants.RANDOM.nextBoolean();
+    if (swap)
+    {
+      to = findOverlapping(triangles, from);
+      if (to == -1) return false;
+      rect = Fitness.unionRect(rect, triangles.get(to).getBoundingRect());
+    }
+    else
+    {
+      // Only the pixels of the moved triangle change
+      do
+      {
+        to = Constants.RANDOM.nextInt(triangles.size());
+      }
+      while (to == from);
+    }
+
+    long before = fitCalc.findRectFitness(genome, rect);
+    MutationJournal journal = genome.journal;
+    journal.begin();
+    if (swap)
+    {
+      journal.swap(from, to);
+    }
+    else
+    {
+      for (int i = from; i != to; i += Integer.signum(to - from))
+      {
+        journal.swap(i, i + Integer.signum(to - from));
+      }
+    }
+    long after = fitCalc.findRectFitness(genome, rect);
+    if (after < before)
+    {
+      journal.commit();
+      genome.fitness += after - before;
+      if (swap)
+      {
+        genome.changed(to, rect);
+      }
+      else
+      {
+        // Every triangle in between moved to a new index
+        genome.tabu.clear();
+        if (genome.errorMap != null) genome.errorMap.markChanged(rect);
+      }
+      return true;
+    }
+    journal.rollback();
+    return false;
+  }
+
+  /**
+   * Find a triangle whose bounding rectangle overlaps that of a triangle
+   * 
+   * @param triangles triangles of the genome
+   * @param index triangle to overlap
+   * @return index of an overlapping triangle, -1 if none was found in a few
+   *         tries
+   */
+  private static int findOverlapping(List<Triangle> triangles, int index)
+  {
+    int[] box = triangles.get(index).getBoundingRect();
+    for (int tries = 0; tries < Constants.Z_ORDER_TRIES; tries++)
+    {
+      int other = Constants.RANDOM.nextInt(triangles.size());
+      if (other == index) continue;
+      int[] otherBox = triangles.get(other).getBoundingRect();
+      if (box[0] <= otherBox[0] + otherBox[2] && otherBox[0] <= box[0] + box[2]
+          && box[1] <= otherBox[1] + otherBox[3] && otherBox[1] <= box[1] + box[3])
+      {
+        return other;
+      }
+    }
+    return -1;
+  }
+}